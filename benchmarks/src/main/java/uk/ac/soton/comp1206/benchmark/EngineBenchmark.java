@@ -0,0 +1,189 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.RandomPieceSource;
+import uk.ac.soton.comp1206.simulation.GreedyPolicy;
+import uk.ac.soton.comp1206.simulation.PlacementPolicy;
+import uk.ac.soton.comp1206.simulation.RandomPolicy;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the game rules in the GameEngine: spawning pieces, clearing lines and scoring after a piece, and
+ * playing whole games the way the Simulator does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EngineBenchmark {
+
+    /**
+     * Width and height of the board
+     */
+    @Param({"5", "8"})
+    public int size;
+
+    /**
+     * Placement policy used to play whole games
+     */
+    @Param({"random", "greedy"})
+    public String policyName;
+
+    /**
+     * Random stream for pieces and moves, seeded so every run plays the same games
+     */
+    private SplittableRandom random;
+
+    /**
+     * Plays whole games
+     */
+    private PlacementPolicy policy;
+
+    /**
+     * Most turns a whole game may last, as a policy on a large board can play for a very long time
+     */
+    private static final int TURN_LIMIT = 10000;
+
+    /**
+     * Piece number of the dot, the one block piece
+     */
+    private static final int DOT = 3;
+
+    /**
+     * Engine using the default piece supplier
+     */
+    private GameEngine spawner;
+
+    /**
+     * Set up the engines and policy
+     */
+    @Setup
+    public void setup() {
+        random = new SplittableRandom(1206);
+        policy = "greedy".equals(policyName) ? new GreedyPolicy() : new RandomPolicy();
+        spawner = new GameEngine(size, size);
+    }
+
+    /**
+     * Create a started engine dealing pieces from the seeded stream
+     * @return engine
+     */
+    private GameEngine newEngine() {
+        var game = new GameEngine(size, size);
+        game.setPieceSource(new RandomPieceSource(random.split()));
+        game.start();
+        return game;
+    }
+
+    /**
+     * Get a new piece from the default random piece supplier
+     * @return the piece
+     */
+    @Benchmark
+    public GamePiece spawnPiece() {
+        return spawner.spawnPiece();
+    }
+
+    /**
+     * Create an engine with a dot just played in the middle of its board
+     * @param size width and height of the board
+     * @param completeLines true to fill the rest of the middle row and column first, so the dot completes both
+     * @return engine
+     */
+    private static GameEngine playDot(int size, boolean completeLines) {
+        var game = new GameEngine(size, size);
+        var grid = game.getGrid();
+        int middle = size / 2;
+        if (completeLines) {
+            for (int i = 0; i < size; i++) {
+                if (i == middle) continue;
+                grid.set(i, middle, 1);
+                grid.set(middle, i, 1);
+            }
+        }
+        grid.playPiece(GamePiece.createPiece(DOT), middle, middle);
+        return game;
+    }
+
+    /**
+     * A board where the last piece completed no lines, prepared afresh before every call
+     */
+    @State(Scope.Thread)
+    public static class OpenBoard {
+        /**
+         * Engine with the dot just played
+         */
+        GameEngine engine;
+
+        /**
+         * Play a dot on an empty board
+         * @param benchmark the benchmark, for the board size
+         */
+        @Setup(Level.Invocation)
+        public void prepare(EngineBenchmark benchmark) {
+            engine = playDot(benchmark.size, false);
+        }
+    }
+
+    /**
+     * A board where the last piece completed a row and a column, prepared afresh before every call
+     */
+    @State(Scope.Thread)
+    public static class FullBoard {
+        /**
+         * Engine with the dot just played
+         */
+        GameEngine engine;
+
+        /**
+         * Play a dot which completes the middle row and column
+         * @param benchmark the benchmark, for the board size
+         */
+        @Setup(Level.Invocation)
+        public void prepare(EngineBenchmark benchmark) {
+            engine = playDot(benchmark.size, true);
+        }
+    }
+
+    /**
+     * Check for lines and score after a piece which completed none
+     * @param board the prepared board
+     * @return lines cleared
+     */
+    @Benchmark
+    public int afterPiece(OpenBoard board) {
+        return board.engine.afterPiece();
+    }
+
+    /**
+     * Clear the lines and score after a piece which completed a row and a column
+     * @param board the prepared board
+     * @return lines cleared
+     */
+    @Benchmark
+    public int afterPieceClearing(FullBoard board) {
+        return board.engine.afterPiece();
+    }
+
+    /**
+     * Play a whole game, losing a life whenever nothing fits, until the game is over
+     * @return final score
+     */
+    @Benchmark
+    public int fullGame() {
+        var game = newEngine();
+        for (int turn = 0; turn < TURN_LIMIT; turn++) {
+            if (policy.playTurn(game, random)) continue;
+            if (!game.loseLife()) break;
+            game.resetMultiplier();
+            game.nextPiece();
+        }
+        return game.getScore();
+    }
+}
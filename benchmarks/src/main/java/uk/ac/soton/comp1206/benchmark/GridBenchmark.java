@@ -0,0 +1,131 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.ac.soton.comp1206.game.CellSet;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for placing pieces on a Grid: checking a placement, playing it, and clearing lines.
+ *
+ * Each invocation uses the next of a fixed, seeded list of pieces and positions, so every run does the same work.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GridBenchmark {
+
+    /**
+     * Number of moves in the list
+     */
+    private static final int MOVES = 1024;
+
+    /**
+     * Width and height of the board
+     */
+    @Param({"5", "8"})
+    public int size;
+
+    /**
+     * Grid half filled with blocks, for checking placements against
+     */
+    private Grid filled;
+
+    /**
+     * Grid pieces are played on
+     */
+    private Grid grid;
+
+    /**
+     * Cells cleared, reused every invocation
+     */
+    private CellSet cleared;
+
+    /**
+     * Pieces to play
+     */
+    private GamePiece[] pieces;
+
+    /**
+     * Columns to play at
+     */
+    private int[] xs;
+
+    /**
+     * Rows to play at
+     */
+    private int[] ys;
+
+    /**
+     * Index of the next move
+     */
+    private int move;
+
+    /**
+     * Build the grids and the list of moves
+     */
+    @Setup
+    public void setup() {
+        var random = new SplittableRandom(1206);
+        filled = new Grid(size, size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (random.nextBoolean()) filled.set(x, y, 1 + random.nextInt(GamePiece.PIECES));
+            }
+        }
+        grid = new Grid(size, size);
+        cleared = new CellSet(size);
+
+        pieces = new GamePiece[MOVES];
+        xs = new int[MOVES];
+        ys = new int[MOVES];
+        for (int i = 0; i < MOVES; i++) {
+            pieces[i] = GamePiece.createPiece(random.nextInt(GamePiece.PIECES), random.nextInt(GamePiece.ROTATIONS));
+            xs[i] = random.nextInt(size);
+            ys[i] = random.nextInt(size);
+        }
+    }
+
+    /**
+     * Move on to the next move in the list
+     * @return index of the move
+     */
+    private int nextMove() {
+        int i = move;
+        move = (move + 1) & (MOVES - 1);
+        return i;
+    }
+
+    /**
+     * Check whether a piece can be played on a half full grid
+     * @return whether it can be played
+     */
+    @Benchmark
+    public boolean canPlayPiece() {
+        int i = nextMove();
+        return filled.canPlayPiece(pieces[i], xs[i], ys[i]);
+    }
+
+    /**
+     * Play a piece and clear any lines it completes, emptying the grid once it fills up
+     * @param blackhole sink for the lines cleared
+     */
+    @Benchmark
+    public void playPiece(Blackhole blackhole) {
+        int i = nextMove();
+        if (!grid.canPlayPiece(pieces[i], xs[i], ys[i])) {
+            //Nothing fits here, start again on an empty grid so the benchmark keeps playing pieces
+            if (Long.bitCount(grid.getOccupancy()) > size * size / 2) grid.clear();
+            return;
+        }
+        grid.playPiece(pieces[i], xs[i], ys[i]);
+        blackhole.consume(grid.clearFullLines(grid.getLastPlacement(), cleared));
+    }
+}
@@ -0,0 +1,56 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for getting and rotating game pieces
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PieceBenchmark {
+
+    /**
+     * Piece number of the next piece to create
+     */
+    private int piece;
+
+    /**
+     * Piece being rotated
+     */
+    private GamePiece current;
+
+    /**
+     * Start from the first piece
+     */
+    @Setup
+    public void setup() {
+        current = GamePiece.createPiece(0);
+    }
+
+    /**
+     * Create each piece in turn
+     * @return the piece
+     */
+    @Benchmark
+    public GamePiece createPiece() {
+        piece = (piece + 1) % GamePiece.PIECES;
+        return GamePiece.createPiece(piece);
+    }
+
+    /**
+     * Rotate a piece one quarter turn to the right
+     * @return the rotated piece
+     */
+    @Benchmark
+    public GamePiece rotate() {
+        current = current.rotate(1);
+        return current;
+    }
+}
@@ -0,0 +1,94 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Places pieces on a Grid from a fixed, seeded stream of moves, counting placements per second.
+ *
+ * Only the parts of Grid and GamePiece which the original property backed Grid also had are used, so this class can
+ * be copied into a benchmarks project built against an older version of the game to compare the two on the same
+ * moves. Each invocation tries the next move, playing the piece if it fits and clearing the grid if it does not.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlacementStreamBenchmark {
+
+    /**
+     * Number of moves in the stream before it repeats
+     */
+    private static final int MOVES = 4096;
+
+    /**
+     * Width and height of the board
+     */
+    @Param({"5", "8"})
+    public int size;
+
+    /**
+     * Grid pieces are played on
+     */
+    private Grid grid;
+
+    /**
+     * Pieces to play, already rotated
+     */
+    private GamePiece[] pieces;
+
+    /**
+     * Columns to play at
+     */
+    private int[] xs;
+
+    /**
+     * Rows to play at
+     */
+    private int[] ys;
+
+    /**
+     * Index of the next move
+     */
+    private int move;
+
+    /**
+     * Build the grid and the stream of moves
+     */
+    @Setup
+    public void setup() {
+        var random = new SplittableRandom(1206);
+        grid = new Grid(size, size);
+        pieces = new GamePiece[MOVES];
+        xs = new int[MOVES];
+        ys = new int[MOVES];
+        for (int i = 0; i < MOVES; i++) {
+            pieces[i] = GamePiece.createPiece(random.nextInt(GamePiece.PIECES), random.nextInt(4));
+            xs[i] = 1 + random.nextInt(size - 2);
+            ys[i] = 1 + random.nextInt(size - 2);
+        }
+        move = 0;
+    }
+
+    /**
+     * Try the next move in the stream
+     * @return true if the piece was played
+     */
+    @Benchmark
+    public boolean place() {
+        int i = move;
+        move = (move + 1) % MOVES;
+        if (grid.canPlayPiece(pieces[i], xs[i], ys[i])) {
+            grid.playPiece(pieces[i], xs[i], ys[i]);
+            return true;
+        }
+        grid.clear();
+        return false;
+    }
+}
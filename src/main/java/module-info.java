@@ -1,5 +1,6 @@
 module uk.ac.soton.comp1206 {
     requires java.scripting;
+    requires java.management;
     requires javafx.controls;
     requires javafx.fxml;
     requires javafx.media;
@@ -9,8 +10,10 @@ module uk.ac.soton.comp1206 {
     exports uk.ac.soton.comp1206;
     exports uk.ac.soton.comp1206.ui;
     exports uk.ac.soton.comp1206.network;
+    exports uk.ac.soton.comp1206.server;
     exports uk.ac.soton.comp1206.scene;
     exports uk.ac.soton.comp1206.event;
     exports uk.ac.soton.comp1206.component;
     exports uk.ac.soton.comp1206.game;
+    exports uk.ac.soton.comp1206.simulation;
 }
\ No newline at end of file
@@ -0,0 +1,228 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * BlockSprites is an atlas of every way a block can look, drawn once for a block size and then copied into the board
+ * with a single drawImage, rather than filling, shading and outlining the block every time it changes.
+ *
+ * The atlas has a column for each value (empty and the 15 colours) and a row for each variant: plain, hovered, with the
+ * centre dot, and with the centre dot while hovered. It is drawn at the block's size in device pixels, so a new atlas is
+ * needed whenever the scaling of the GamePane changes; atlases are cached by pixel size, keeping the few most recent.
+ *
+ * Atlases are drawn by taking a snapshot, so must only be asked for on the FX thread.
+ */
+public class BlockSprites {
+
+    private static final Logger logger = LogManager.getLogger(BlockSprites.class);
+
+    /**
+     * Number of atlases kept
+     */
+    private static final int CACHE_SIZE = 8;
+
+    /**
+     * Number of variants of each value
+     */
+    private static final int VARIANTS = 4;
+
+    /**
+     * Variant with the mouse over the block
+     */
+    private static final int HOVER = 1;
+
+    /**
+     * Variant with the centre dot
+     */
+    private static final int CENTRE = 2;
+
+    /**
+     * Transparent space around each sprite, so smoothing never picks up the sprite next to it
+     */
+    private static final int GUTTER = 1;
+
+    /**
+     * Atlases which have been drawn, keyed by pixel size, least recently used first
+     */
+    private static final Map<Long, BlockSprites> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, BlockSprites> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * The atlas image
+     */
+    private final Image atlas;
+
+    /**
+     * Width of each sprite in pixels
+     */
+    private final int pixelWidth;
+
+    /**
+     * Height of each sprite in pixels
+     */
+    private final int pixelHeight;
+
+    /**
+     * Get the atlas for blocks of the given size, drawing it if needed
+     * @param width width of a block in layout units
+     * @param height height of a block in layout units
+     * @param scale device pixels per layout unit
+     * @return the atlas
+     */
+    public static BlockSprites forSize(double width, double height, double scale) {
+        int pixelWidth = Math.max(1, (int) Math.ceil(width * scale));
+        int pixelHeight = Math.max(1, (int) Math.ceil(height * scale));
+        return cache.computeIfAbsent(((long) pixelWidth << 32) | pixelHeight,
+                key -> new BlockSprites(pixelWidth, pixelHeight));
+    }
+
+    /**
+     * Draw every sprite into a new atlas
+     * @param pixelWidth width of each sprite in pixels
+     * @param pixelHeight height of each sprite in pixels
+     */
+    private BlockSprites(int pixelWidth, int pixelHeight) {
+        logger.info("Drawing block sprites at {} x {}", pixelWidth, pixelHeight);
+        this.pixelWidth = pixelWidth;
+        this.pixelHeight = pixelHeight;
+
+        var canvas = new Canvas(GameBlock.COLOURS.length * (pixelWidth + 2 * GUTTER), VARIANTS * (pixelHeight + 2 * GUTTER));
+        var gc = canvas.getGraphicsContext2D();
+        for (int value = 0; value < GameBlock.COLOURS.length; value++) {
+            for (int variant = 0; variant < VARIANTS; variant++) {
+                double left = sourceX(value);
+                double top = sourceY(variant);
+                if (value == 0) {
+                    paintEmpty(gc, left, top, pixelWidth, pixelHeight);
+                } else {
+                    paintColor(gc, left, top, pixelWidth, pixelHeight, GameBlock.COLOURS[value]);
+                }
+                if ((variant & CENTRE) != 0) paintCenter(gc, left, top, pixelWidth, pixelHeight);
+                if ((variant & HOVER) != 0) paintHover(gc, left, top, pixelWidth, pixelHeight);
+            }
+        }
+
+        var parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        atlas = canvas.snapshot(parameters, new WritableImage((int) canvas.getWidth(), (int) canvas.getHeight()));
+    }
+
+    /**
+     * Left edge of the sprites for a value in the atlas
+     * @param value block value
+     * @return x position in pixels
+     */
+    private double sourceX(int value) {
+        return value * (pixelWidth + 2 * GUTTER) + GUTTER;
+    }
+
+    /**
+     * Top edge of the sprites for a variant in the atlas
+     * @param variant variant number
+     * @return y position in pixels
+     */
+    private double sourceY(int variant) {
+        return variant * (pixelHeight + 2 * GUTTER) + GUTTER;
+    }
+
+    /**
+     * Copy a block's sprite into a cell
+     * @param gc graphics context to draw into
+     * @param value block value
+     * @param hover whether the mouse is over the block
+     * @param centre whether the block shows the centre dot
+     * @param left left edge of the cell
+     * @param top top edge of the cell
+     * @param width width of the cell
+     * @param height height of the cell
+     */
+    public void draw(GraphicsContext gc, int value, boolean hover, boolean centre, double left, double top,
+                     double width, double height) {
+        int variant = (hover ? HOVER : 0) | (centre ? CENTRE : 0);
+        gc.drawImage(atlas, sourceX(value), sourceY(variant), pixelWidth, pixelHeight, left, top, width, height);
+    }
+
+    /**
+     * Paint an empty block
+     * @param gc graphics context
+     * @param left left edge of the block
+     * @param top top edge of the block
+     * @param width width of the block
+     * @param height height of the block
+     */
+    private static void paintEmpty(GraphicsContext gc, double left, double top, double width, double height) {
+        //Fill
+        gc.setFill(Color.rgb(255, 255, 255, 0.5)); // 50% transparent white
+        gc.fillRect(left, top, width, height);
+
+        //Border, kept inside the block so it does not draw over its neighbours
+        gc.setStroke(Color.BLACK);
+        gc.setLineWidth(1);
+        gc.strokeRect(left + 0.5, top + 0.5, width - 1, height - 1);
+    }
+
+    /**
+     * Paint a block with the given colour
+     * @param gc graphics context
+     * @param left left edge of the block
+     * @param top top edge of the block
+     * @param width width of the block
+     * @param height height of the block
+     * @param colour the colour to paint
+     */
+    private static void paintColor(GraphicsContext gc, double left, double top, double width, double height,
+                                   Color colour) {
+        // Color fill
+        gc.setFill(colour);
+        gc.fillRect(left, top, width, height);
+
+        // Creates 3D effect on piece
+        gc.setFill(Color.rgb(59, 59, 59, 0.2));
+        gc.fillPolygon(new double[]{left, left, left + width}, new double[]{top, top + height, top + height}, 3);
+
+        //Border
+        gc.setStroke(Color.rgb(0, 0, 0, 0.6));
+        gc.setLineWidth(1);
+        gc.strokeRect(left + 0.5, top + 0.5, width - 1, height - 1);
+    }
+
+    /**
+     * Paint the circle marking the centre of the current piece
+     * @param gc graphics context
+     * @param left left edge of the block
+     * @param top top edge of the block
+     * @param width width of the block
+     * @param height height of the block
+     */
+    private static void paintCenter(GraphicsContext gc, double left, double top, double width, double height) {
+        gc.setFill(Color.color(1,1,0.9,0.6));
+        gc.fillOval(left + width/4, top + height/4, width/2, height/2);
+    }
+
+    /**
+     * Paint the hover highlight
+     * @param gc graphics context
+     * @param left left edge of the block
+     * @param top top edge of the block
+     * @param width width of the block
+     * @param height height of the block
+     */
+    private static void paintHover(GraphicsContext gc, double left, double top, double width, double height) {
+        gc.setFill(Color.rgb(255,255,255,0.5));
+        gc.fillRect(left, top, width, height);
+    }
+}
@@ -1,25 +1,24 @@
 package uk.ac.soton.comp1206.component;
 
-import javafx.animation.AnimationTimer;
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
-import javafx.beans.value.ObservableValue;
-import javafx.scene.canvas.Canvas;
-import javafx.scene.paint.*;
-import javafx.scene.shape.Line;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.ui.AnimationEngine;
 
 /**
  * The Visual User Interface component representing a single block in the grid.
  *
- * Extends Canvas and is responsible for drawing itself.
+ * A GameBlock is not a node of its own: the GameBoard it belongs to draws every block into one shared canvas. The
+ * block holds what it should look like and asks the board to repaint its cell whenever that changes; the board then
+ * repaints all the changed cells together on the next pulse, copying each block from its BlockSprites atlas.
  *
  * Displays an empty square (when the value is 0) or a coloured square depending on value.
  *
- * The GameBlock value should be bound to a corresponding block in the Grid model.
+ * The GameBlock value should follow a corresponding block in the Grid model, which the GameBoard does by listening
+ * for changes to the grid.
  */
-public class GameBlock extends Canvas {
+public class GameBlock {
 
     private static final Logger logger = LogManager.getLogger(GameBlock.class);
     Boolean center = false;
@@ -46,6 +45,31 @@ public class GameBlock extends Canvas {
             Color.PURPLE
     };
 
+    /**
+     * How long a block takes to fade out after a line clear, in nanoseconds
+     */
+    private static final long FADE_NANOS = 830_000_000L;
+
+    /**
+     * Opacity of the ghost of a piece which can be played
+     */
+    private static final double GHOST_OPACITY = 0.45;
+
+    /**
+     * Tint over the ghost of a piece which cannot be played
+     */
+    private static final Color GHOST_BLOCKED = Color.rgb(255, 0, 0, 0.35);
+
+    /**
+     * Outline of a suggested placement of the current piece
+     */
+    private static final Color HINT = Color.GOLD;
+
+    /**
+     * Outline of a suggested placement which needs the pieces swapping first
+     */
+    private static final Color HINT_SWAP = Color.DEEPSKYBLUE;
+
     private final GameBoard gameBoard;
 
     private final double width;
@@ -64,16 +88,41 @@ public class GameBlock extends Canvas {
     /**
      * The value of this block (0 = empty, otherwise specifies the colour to render as)
      */
-    private final IntegerProperty value = new SimpleIntegerProperty(0);
+    private int value = 0;
     private boolean hover = false;
 
+    /**
+     * Whether this block is part of the suggested placement
+     */
+    private boolean hint = false;
+
+    /**
+     * Whether the suggested placement is for the next piece, after swapping
+     */
+    private boolean swapHint = false;
+
+    /**
+     * Opacity of the white overlay while this block fades out after a line clear, 0 when not fading
+     */
+    private double fade = 0;
+
+    /**
+     * Time the fade out started, from the first frame it was drawn in, or 0 before then
+     */
+    private long fadeStart = 0;
+
+    /**
+     * Moves the fade out on each frame
+     */
+    private final AnimationEngine.Effect fadeEffect = this::stepFade;
+
     /**
      * Create a new single Game Block
      * @param gameBoard the board this block belongs to
      * @param x the column the block exists in
      * @param y the row the block exists in
-     * @param width the width of the canvas to render
-     * @param height the height of the canvas to render
+     * @param width the width of the block
+     * @param height the height of the block
      */
     public GameBlock(GameBoard gameBoard, int x, int y, double width, double height) {
         this.gameBoard = gameBoard;
@@ -82,101 +131,71 @@ public class GameBlock extends Canvas {
         this.x = x;
         this.y = y;
 
-        //A canvas needs a fixed width and height
-        setWidth(width);
-        setHeight(height);
-
         //Do an initial paint
         paint();
-
-        //When the value property is updated, call the internal updateValue method
-        value.addListener(this::updateValue);
     }
 
     /**
-     * When the value of this block is updated,
-     * @param observable what was updated
-     * @param oldValue the old value
-     * @param newValue the new value
+     * Update the value of this block, repainting it if the value has changed
+     * @param value the new value
      */
-    private void updateValue(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
+    public void setValue(int value) {
+        if (this.value == value) return;
+        this.value = value;
+        //A block placed while the old one fades out replaces the fade
+        if (value != 0) fade = 0;
         paint();
     }
 
     /**
-     * Handle painting of the block canvas
+     * Ask the board to repaint this block on the next pulse
      */
     public void paint() {
-        //If the block is empty, paint as empty
-        if(value.get() == 0) {
-            paintEmpty();
-        } else {
-            //If the block is not empty, paint with the colour represented by the value
-            paintColor(COLOURS[value.get()]);
-        }
-//        logger.info("Center is " + center);
-        //Need help explaining
-        //Center variable set true by currentPieceBoard.blocks[1][1].center(); and currentPieceBoard when painted will always paint circle
-        if (center) {
-            center();
-        }
-        if (hover) {
-            paintHover();
-        }
+        gameBoard.repaint(x, y);
     }
 
     /**
-     * Paint this canvas empty
+     * Draw this block into its cell of the board's canvas
+     * @param gc graphics context of the board's canvas
+     * @param sprites pre-drawn blocks at the board's current scale
+     * @param ghost value of the piece previewed over this cell, -1 if the preview cannot be played, or 0 for none
      */
-    private void paintEmpty() {
-        var gc = getGraphicsContext2D();
-
-        //Clear
-        gc.clearRect(0,0,width,height);
-
-        //Fill
-        gc.setFill(Color.rgb(255, 255, 255, 0.5)); // 50% transparent white
-        gc.fillRect(0, 0, width, height);
+    void draw(GraphicsContext gc, BlockSprites sprites, int ghost) {
+        double left = x * width;
+        double top = y * height;
+        gc.clearRect(left, top, width, height);
+        sprites.draw(gc, value, hover, center, left, top, width, height);
+
+        if (ghost > 0 && value == 0) {
+            //A see-through copy of the piece where it would land
+            gc.setGlobalAlpha(GHOST_OPACITY);
+            sprites.draw(gc, ghost, false, false, left, top, width, height);
+            gc.setGlobalAlpha(1);
+        } else if (ghost < 0) {
+            gc.setFill(GHOST_BLOCKED);
+            gc.fillRect(left, top, width, height);
+        }
 
-        //Border
-        gc.setStroke(Color.BLACK);
-        gc.setLineWidth(2);
-        gc.strokeRect(0,0,width,height);
+        if (hint) {
+            paintHint(gc, left, top);
+        }
+        if (fade > 0) {
+            //Slowly fill back in the blocks to make it look like it disappeared
+            gc.setFill(Color.rgb(255, 255, 255, fade));
+            gc.fillRect(left, top, width, height);
+        }
     }
 
     /**
-     * Paint this canvas with the given colour
-     * @param colour the colour to paint
+     * Paints an outline to show the suggested placement, gold for the current piece and blue for the next piece
+     * @param gc graphics context
+     * @param left left edge of the cell
+     * @param top top edge of the cell
      */
-    private void paintColor(Paint colour) {
-        var gc = getGraphicsContext2D();
-
-        // Clear
-        gc.clearRect(0, 0, width, height);
-
-        // Color fill
-        gc.setFill(colour);
-        gc.fillRect(0, 0, width, height);
-
-        // Creates 3D effect on piece
-        gc.setFill(Color.rgb(59, 59, 59, 0.2));
-        gc.fillPolygon(new double[]{0, 0, width}, new double[]{0, height, height}, 3);
-
-        //Border
-        gc.setStroke(Color.rgb(0, 0, 0, 0.6));
-        gc.strokeRect(0, 0, width, height);
-
-//        //Clear
-//        gc.clearRect(0,0,width,height);
-//
-//
-//        //Colour fill
-//        gc.setFill(colour);
-//        gc.fillRect(0,0, width, height);
-//
-//        //Border
-//        gc.setStroke(Color.BLACK);
-//        gc.strokeRect(0,0,width,height);
+    private void paintHint(GraphicsContext gc, double left, double top) {
+        gc.setStroke(swapHint ? HINT_SWAP : HINT);
+        gc.setLineWidth(4);
+        gc.strokeRect(left + 2, top + 2, width - 4, height - 4);
     }
 
     /**
@@ -200,15 +219,7 @@ public class GameBlock extends Canvas {
      * @return value
      */
     public int getValue() {
-        return this.value.get();
-    }
-
-    /**
-     * Bind the value of this block to another property. Used to link the visual block to a corresponding block in the Grid.
-     * @param input property to bind the value to
-     */
-    public void bind(ObservableValue<? extends Number> input) {
-        value.bind(input);
+        return this.value;
     }
 
     /**
@@ -216,52 +227,53 @@ public class GameBlock extends Canvas {
      */
     public void center() {
         center = true;
-        var gc = getGraphicsContext2D();
-        gc.setFill(Color.color(1,1,0.9,0.6));
-        gc.fillOval(width/4, height/4, width/2, height/2);
+        paint();
     }
 
     /**
-     * Sets hover true or false and re-paints the grid
+     * Sets hover true or false and re-paints the block
      * @param hover Checks if hover is already hovering over another block
      */
     public void hover(Boolean hover) {
+        if (this.hover == hover) return;
         this.hover = hover;
         paint();
     }
 
     /**
-     * Paints hover grey
+     * Sets whether this block is part of the suggested placement and re-paints it
+     * @param hint true to show the hint on this block
+     * @param swap true if the placement is for the next piece, after swapping
      */
-
-    public void paintHover() {
-        var gc = getGraphicsContext2D();
-        gc.setFill(Color.rgb(255,255,255,0.5));
-        gc.fillRect(0,0,width,height);
-
+    public void hint(boolean hint, boolean swap) {
+        if (this.hint == hint && this.swapHint == swap) return;
+        this.hint = hint;
+        this.swapHint = swap;
+        paint();
     }
 
     /**
      * Creates the fade effect when line is cleared
      */
     public void fadeOut() {
-        AnimationTimer timer = new AnimationTimer() {
-            double opacity = 1;
-            @Override
-            public void handle(long l) {
-                paintEmpty();
-                opacity -= 0.02;
-                if (opacity < 0) {
-                    stop();
-                    opacity = 0;
-                }
-                //Slowly fill back in the blocks to make it look like it disappeared
-                var gc = getGraphicsContext2D();
-                gc.setFill(Color.rgb(255, 255, 255, opacity));
-                gc.fillRect(0, 0, width, height);
-            }
-        };
-        timer.start();
+        fade = 1;
+        fadeStart = 0;
+        //Without an animation engine there is nothing to fade it, so just show the block cleared
+        if (!gameBoard.animate(fadeEffect)) fade = 0;
+        paint();
+    }
+
+    /**
+     * Move the fade out on to the current frame
+     * @param now time of the frame in nanoseconds
+     * @return true if the block is still fading
+     */
+    private boolean stepFade(long now) {
+        if (fade <= 0) return false;
+        if (fadeStart == 0) fadeStart = now;
+        fade = Math.max(0, 1 - (double) (now - fadeStart) / FADE_NANOS);
+        paint();
+        return fade > 0;
     }
 
     @Override
@@ -269,7 +281,7 @@ public class GameBlock extends Canvas {
         return "GameBlock{" +
                 "x=" + x +
                 ", y=" + y +
-                ", value=" + value.get() +
+                ", value=" + value +
                 '}';
     }
 }
@@ -1,20 +1,41 @@
 package uk.ac.soton.comp1206.component;
 
-import javafx.scene.input.MouseButton;
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.scene.canvas.Canvas;
 import javafx.scene.input.MouseEvent;
-import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Region;
+import javafx.scene.transform.Scale;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.event.BlockClickedListener;
 import uk.ac.soton.comp1206.event.RightClickedListener;
-import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.CellSet;
+import uk.ac.soton.comp1206.game.GamePiece;
 import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.PlacementMasks;
+import uk.ac.soton.comp1206.ui.AnimationEngine;
+import uk.ac.soton.comp1206.ui.DebugHud;
+import uk.ac.soton.comp1206.ui.GamePane;
 
-import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A GameBoard is a visual component to represent the visual GameBoard.
- * It extends a GridPane to hold a grid of GameBlocks.
+ * It draws a grid of GameBlocks into a single canvas.
+ *
+ * Blocks never paint straight away. When one changes it marks its cell dirty, and once per pulse the board repaints
+ * just the dirty cells, however many times they changed in between. Cells can be marked dirty from any thread, as
+ * grid changes are not always made on the FX thread. Repaints and block fades run as effects of the scene's
+ * AnimationEngine. Mouse positions are turned into cells arithmetically.
+ *
+ * The canvas is kept at the size the board is shown at in device pixels, following the render scale of the GamePane
+ * it is in, and scaled back down to the board's size. Blocks are drawn in the board's own units, so the scaling is
+ * only applied to the canvas and its drawing transform.
+ *
+ * When given a piece, the board shows a ghost of it over the hovered cell, tinted red if it cannot be played there.
+ * The ghost is worked out from the grid's placement masks at most once per pulse, however fast the mouse moves, and
+ * only the cells entering or leaving it are repainted.
  *
  * The GameBoard can hold an internal grid of it's own, for example, for displaying an upcoming block. It also be
  * linked to an external grid, for the main game board.
@@ -22,7 +43,7 @@ import java.util.HashSet;
  * The GameBoard is only a visual representation and should not contain game logic or model logic in it, which should
  * take place in the Grid.
  */
-public class GameBoard extends GridPane {
+public class GameBoard extends Region {
 
     private static final Logger logger = LogManager.getLogger(GameBoard.class);
 
@@ -56,6 +77,52 @@ public class GameBoard extends GridPane {
      */
     public GameBlock[][] blocks;
 
+    /**
+     * The canvas every block is drawn into
+     */
+    private final Canvas canvas;
+
+    /**
+     * Cells waiting to be repainted, one bit per cell in the Grid's layout
+     */
+    private final AtomicLong dirty = new AtomicLong();
+
+    /**
+     * Device pixels per layout unit, from the render scale of the GamePane the board is shown in
+     */
+    private double pixelScale = 1;
+
+    /**
+     * Scales the canvas back down from device pixels to the board's size
+     */
+    private final Scale canvasScale = new Scale(1, 1, 0, 0);
+
+    /**
+     * Pre-drawn blocks for the current block size and scale, drawn when first needed
+     */
+    private BlockSprites sprites;
+
+    /**
+     * Listens for the render scale of the GamePane changing
+     */
+    private final ChangeListener<Number> scaleListener = (observable, oldScale, newScale) ->
+            setPixelScale(newScale.doubleValue());
+
+    /**
+     * GamePane the board is currently shown in
+     */
+    private GamePane gamePane;
+
+    /**
+     * Animation engine of the scene the board is shown in
+     */
+    private AnimationEngine animations;
+
+    /**
+     * Repaints the dirty cells once per pulse, and finishes when there is nothing left to repaint
+     */
+    private final AnimationEngine.Effect repaint = now -> flush();
+
     /**
      * The listener to call when a specific block is clicked
      */
@@ -66,6 +133,36 @@ public class GameBoard extends GridPane {
     private RightClickedListener rightClickedListener;
     private GameBlock hoveredBlock;
 
+    /**
+     * Placement masks for the board's grid, used for the ghost
+     */
+    private final PlacementMasks masks;
+
+    /**
+     * Piece shown as a ghost over the hovered cell, or null for no ghost
+     */
+    private volatile GamePiece ghostPiece;
+
+    /**
+     * Whether the mouse or keyboard is over the board, so the ghost should be shown
+     */
+    private boolean ghostShown = false;
+
+    /**
+     * Cells covered by the ghost as last drawn
+     */
+    private long ghostMask = 0;
+
+    /**
+     * Whether the ghost as last drawn could be played
+     */
+    private boolean ghostLegal = false;
+
+    /**
+     * Value of the piece the ghost was last worked out for, which it is drawn in
+     */
+    private int ghostValue = 0;
+
 
     /**
      * Create a new GameBoard, based off a given grid, with a visual width and height.
@@ -79,6 +176,8 @@ public class GameBoard extends GridPane {
         this.width = width;
         this.height = height;
         this.grid = grid;
+        this.canvas = new Canvas(width, height);
+        this.masks = grid.getPlacementMasks();
 
         //Build the GameBoard
         build();
@@ -99,6 +198,8 @@ public class GameBoard extends GridPane {
         this.width = width;
         this.height = height;
         this.grid = new Grid(cols,rows);
+        this.canvas = new Canvas(width, height);
+        this.masks = grid.getPlacementMasks();
 
         //Build the GameBoard
         build();
@@ -122,8 +223,8 @@ public class GameBoard extends GridPane {
 
         setMaxWidth(width);
         setMaxHeight(height);
-
-        setGridLinesVisible(true);
+        canvas.getTransforms().add(canvasScale);
+        getChildren().add(canvas);
 
         blocks = new GameBlock[cols][rows];
 
@@ -132,6 +233,77 @@ public class GameBoard extends GridPane {
                 createBlock(x,y);
             }
         }
+
+        //Follow changes to the grid, only the block that changed is told about it
+        grid.addGridChangedListener(this::gridChanged);
+
+        //Work out which block the mouse is over from its position
+        canvas.setOnMouseMoved(event -> hover(blockAt(event)));
+        canvas.setOnMouseExited(event -> {
+            if (hoveredBlock != null) hoveredBlock.hover(false);
+            ghostShown = false;
+            startPulse();
+        });
+        canvas.setOnMouseClicked(event -> {
+            var block = blockAt(event);
+            if (block != null) blockClicked(event, block);
+        });
+
+        //Follow the scaling and animations of whichever scene the board ends up in
+        sceneProperty().addListener((observable, oldScene, newScene) -> {
+            findGamePane();
+            animations = AnimationEngine.forNode(this);
+            //Anything changed before the board was shown still needs painting
+            if (dirty.get() != 0) startPulse();
+        });
+    }
+
+    /**
+     * Find the GamePane this board is inside and follow its render scale
+     */
+    private void findGamePane() {
+        if (gamePane != null) gamePane.renderScaleProperty().removeListener(scaleListener);
+        gamePane = null;
+        for (var parent = getParent(); parent != null; parent = parent.getParent()) {
+            if (parent instanceof GamePane pane) {
+                gamePane = pane;
+                pane.renderScaleProperty().addListener(scaleListener);
+                setPixelScale(pane.getRenderScale());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Set how many device pixels there are per layout unit. If it changed the canvas is resized to match and every
+     * block is redrawn from a matching atlas.
+     * @param pixelScale device pixels per layout unit
+     */
+    public void setPixelScale(double pixelScale) {
+        if (pixelScale <= 0 || pixelScale == this.pixelScale) return;
+        this.pixelScale = pixelScale;
+        sprites = null;
+
+        canvas.setWidth(Math.ceil(width * pixelScale));
+        canvas.setHeight(Math.ceil(height * pixelScale));
+        canvasScale.setX(1 / pixelScale);
+        canvasScale.setY(1 / pixelScale);
+        canvas.getGraphicsContext2D().setTransform(pixelScale, 0, 0, pixelScale, 0, 0);
+        for (var y = 0; y < rows; y++) {
+            for (var x = 0; x < cols; x++) {
+                repaint(x, y);
+            }
+        }
+    }
+
+    /**
+     * Called when a cell in the linked grid changes, passes the new value on to the matching block
+     * @param x column
+     * @param y row
+     * @param value new value of the cell
+     */
+    private void gridChanged(int x, int y, int value) {
+        blocks[x][y].setValue(value);
     }
 
     /**
@@ -143,29 +315,125 @@ public class GameBoard extends GridPane {
         var blockWidth = width / cols;
         var blockHeight = height / rows;
 
-        //Create a new GameBlock UI component
+        //Create a new GameBlock
         GameBlock block = new GameBlock(this, x, y, blockWidth, blockHeight);
 
-        //Add to the GridPane
-        add(block,x,y);
-
         //Add to our block directory
         blocks[x][y] = block;
 
-        //Link the GameBlock component to the corresponding value in the Grid
-        block.bind(grid.getGridProperty(x,y));
+        //Start the GameBlock component off with the corresponding value in the Grid
+        block.setValue(grid.get(x,y));
 
-        //Add a mouse click handler to the block to trigger GameBoard blockClicked method
-        block.setOnMouseClicked((e) -> blockClicked(e, block));
-        block.setOnMouseEntered((event -> {
-            hover(block);
-        }));
+        return block;
+    }
 
-        block.setOnMouseExited(event -> {
-            block.hover(false);
-        });
+    /**
+     * Find the block under a mouse position
+     * @param event mouse event on the canvas
+     * @return the block, or null if the position is not over one
+     */
+    private GameBlock blockAt(MouseEvent event) {
+        //Events are in the canvas's own device pixels
+        int x = (int) Math.floor(event.getX() / pixelScale * cols / width);
+        int y = (int) Math.floor(event.getY() / pixelScale * rows / height);
+        if (x < 0 || x >= cols || y < 0 || y >= rows) return null;
+        return blocks[x][y];
+    }
 
-        return block;
+    /**
+     * Mark a cell to be repainted on the next pulse. Safe to call from any thread.
+     * @param x column
+     * @param y row
+     */
+    void repaint(int x, int y) {
+        long cell = 1L << (y * cols + x);
+        long before = dirty.getAndUpdate(cells -> cells | cell);
+        //Only the first dirty cell since the last repaint needs to wake the pulse up
+        if (before == 0) {
+            if (Platform.isFxApplicationThread()) {
+                startPulse();
+            } else {
+                Platform.runLater(this::startPulse);
+            }
+        }
+    }
+
+    /**
+     * Run an effect on the scene's animation engine
+     * @param effect effect to run
+     * @return false if the board is not in a scene with an engine, so the effect cannot run
+     */
+    boolean animate(AnimationEngine.Effect effect) {
+        if (animations == null) return false;
+        animations.add(effect);
+        return true;
+    }
+
+    /**
+     * Repaint the dirty cells on the next pulse, if the board is in a scene
+     */
+    private void startPulse() {
+        animate(repaint);
+    }
+
+    /**
+     * Repaint every dirty cell
+     * @return true if more cells have been marked dirty since, so the repaint should run again next pulse
+     */
+    private boolean flush() {
+        long cells = dirty.getAndSet(0) | updateGhost();
+        if (cells != 0) {
+            var gc = canvas.getGraphicsContext2D();
+            if (sprites == null) sprites = BlockSprites.forSize(width / cols, height / rows, pixelScale);
+            int ghost = ghostLegal ? ghostValue : -1;
+            DebugHud.repainted(Long.bitCount(cells));
+            while (cells != 0) {
+                int index = Long.numberOfTrailingZeros(cells);
+                cells &= cells - 1;
+                blocks[index % cols][index / cols].draw(gc, sprites, (ghostMask & (1L << index)) != 0 ? ghost : 0);
+            }
+        }
+
+        return dirty.get() != 0;
+    }
+
+    /**
+     * Work out where the ghost is now and whether it can be played, from the hovered cell, the ghost piece and the
+     * grid's occupancy
+     * @return cells which need repainting because the ghost has changed over them
+     */
+    private long updateGhost() {
+        var piece = ghostPiece;
+        long mask = 0;
+        boolean legal = false;
+        int value = 0;
+        if (piece != null && ghostShown && hoveredBlock != null) {
+            value = piece.getValue();
+            int x = hoveredBlock.getX();
+            int y = hoveredBlock.getY();
+            mask = masks.getMask(piece, x, y);
+            legal = masks.canPlay(grid.getOccupancy(), piece.getIndex(), piece.getRotation(), x, y);
+        }
+        //Cells entering or leaving the ghost, or all of it if its tint or colour changed
+        boolean restyled = legal != ghostLegal || value != ghostValue;
+        long changed = (mask ^ ghostMask) | (restyled ? mask | ghostMask : 0);
+        ghostMask = mask;
+        ghostLegal = legal;
+        ghostValue = value;
+        return changed;
+    }
+
+    /**
+     * Set the piece to show as a ghost over the hovered cell. Safe to call from any thread.
+     * @param piece piece to show, or null to show no ghost
+     */
+    public void setGhostPiece(GamePiece piece) {
+        ghostPiece = piece;
+        if (Platform.isFxApplicationThread()) {
+            startPulse();
+        } else {
+            Platform.runLater(this::startPulse);
+        }
     }
 
     /**
@@ -173,7 +441,11 @@ public class GameBoard extends GridPane {
      * @param gameBlock GameBlock to be placed on grid
      */
     public void hover(GameBlock gameBlock) {
+        if (gameBlock == null) return;
+        if (hoveredBlock != null && hoveredBlock != gameBlock) hoveredBlock.hover(false);
+        if (hoveredBlock != gameBlock || !ghostShown) startPulse();
         hoveredBlock = gameBlock;
+        ghostShown = true;
         hoveredBlock.hover(true);
     }
 
@@ -209,25 +481,34 @@ public class GameBoard extends GridPane {
 
     /**
      * Fade effect for completed blocks
-     * @param blockCoordinates block coordinates to clear
+     * @param cells cells to clear
      */
-    public void fadeOut(HashSet<GameBlockCoordinate> blockCoordinates) {
-        for (GameBlockCoordinate coordinate: blockCoordinates) {
-            getBlock(coordinate.getX(), coordinate.getY()).fadeOut();
-        }
+    public void fadeOut(CellSet cells) {
+        cells.forEach((x, y) -> getBlock(x, y).fadeOut());
     }
 
     /**
-     * Resets all game blocks to unhovered
+     * Outline the blocks of a suggested placement, removing any previous suggestion
+     * @param cells mask of the cells to outline, in the Grid's occupancy bitboard layout, or 0 to clear
+     * @param swap true if the placement is for the next piece, so it is outlined in a different colour
      */
-    public void resetHover() {
-        for (GameBlock[] gameBlocks: blocks) {
-            for (GameBlock gameBlock: gameBlocks) {
-                gameBlock.hover(false);
+    public void showHint(long cells, boolean swap) {
+        for (var y = 0; y < rows; y++) {
+            for (var x = 0; x < cols; x++) {
+                blocks[x][y].hint((cells & (1L << (y * cols + x))) != 0, swap);
             }
         }
     }
 
+    /**
+     * Resets the hovered block to unhovered and hides the ghost
+     */
+    public void resetHover() {
+        if (hoveredBlock != null) hoveredBlock.hover(false);
+        ghostShown = false;
+        startPulse();
+    }
+
     /**
      * Retrieve hovered block
      * @return Current hovered block
@@ -236,4 +517,32 @@ public class GameBoard extends GridPane {
         return hoveredBlock;
     }
 
+    /**
+     * Place the canvas inside the board's padding
+     */
+    @Override
+    protected void layoutChildren() {
+        canvas.relocate(snappedLeftInset(), snappedTopInset());
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return snappedLeftInset() + width + snappedRightInset();
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return snappedTopInset() + height + snappedBottomInset();
+    }
+
+    @Override
+    protected double computeMinWidth(double height) {
+        return computePrefWidth(height);
+    }
+
+    @Override
+    protected double computeMinHeight(double width) {
+        return computePrefHeight(width);
+    }
+
 }
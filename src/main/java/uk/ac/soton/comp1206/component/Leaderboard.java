@@ -0,0 +1,256 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.application.Platform;
+import javafx.geometry.VPos;
+import javafx.scene.layout.Pane;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextBoundsType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.ui.AnimationEngine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The Leaderboard shows the players in a multiplayer channel, highest score first.
+ *
+ * Scores can be handed over from any thread as often as they arrive; only the latest is kept, and it is applied at
+ * most once per pulse. Rows are keyed by player, so an update only changes the text of rows whose score changed and
+ * slides rows whose rank changed to their new place, rather than rebuilding anything.
+ *
+ * Only the rows which fit are given nodes, so a large channel costs no more than a small one. Scrolling moves the
+ * window of ranks shown, and rows leaving the window are kept and reused for those entering it.
+ */
+public class Leaderboard extends Pane {
+
+    private static final Logger logger = LogManager.getLogger(Leaderboard.class);
+
+    /**
+     * Height of each row
+     */
+    private static final double ROW_HEIGHT = 30;
+
+    /**
+     * How long a row takes to slide to a new rank, in nanoseconds
+     */
+    private static final long MOVE_NANOS = 300_000_000L;
+
+    /**
+     * A player's standing in the channel
+     * @param name player name
+     * @param score score
+     * @param lives lives left, or "DEAD"
+     */
+    public record Entry(String name, int score, String lives) {}
+
+    /**
+     * A row shown on the board
+     */
+    private static class Row {
+        /**
+         * The row's text
+         */
+        final Text text;
+
+        /**
+         * Where the current slide started, and where it ends
+         */
+        double from;
+        double to;
+
+        /**
+         * Time the current slide started, or 0 before its first frame
+         */
+        long start;
+
+        /**
+         * Moves the row on each frame until it reaches its place
+         */
+        final AnimationEngine.Effect slide;
+
+        /**
+         * Create a row
+         * @param text the row's text
+         */
+        Row(Text text) {
+            this.text = text;
+            this.slide = now -> {
+                if (start == 0) start = now;
+                double progress = Math.min(1, (double) (now - start) / MOVE_NANOS);
+                //Ease out, so rows settle into place
+                double eased = 1 - (1 - progress) * (1 - progress);
+                text.setTranslateY(from + (to - from) * eased);
+                return progress < 1;
+            };
+        }
+    }
+
+    /**
+     * Number of ranks shown at once
+     */
+    private final int visibleRows;
+
+    /**
+     * Latest scores waiting to be applied, replaced by anything newer before then
+     */
+    private final AtomicReference<List<Entry>> pending = new AtomicReference<>();
+
+    /**
+     * Whether an update has been queued on the FX thread
+     */
+    private final AtomicBoolean queued = new AtomicBoolean();
+
+    /**
+     * Players in rank order, as last applied
+     */
+    private List<Entry> ranked = List.of();
+
+    /**
+     * Rows shown, by player
+     */
+    private final Map<String, Row> shown = new HashMap<>();
+
+    /**
+     * Rows not currently shown, ready for reuse
+     */
+    private final ArrayDeque<Row> spare = new ArrayDeque<>();
+
+    /**
+     * First rank shown
+     */
+    private int first = 0;
+
+    /**
+     * Create a leaderboard
+     * @param visibleRows number of ranks shown at once
+     */
+    public Leaderboard(int visibleRows) {
+        this.visibleRows = visibleRows;
+        setPrefHeight(visibleRows * ROW_HEIGHT);
+        setMinHeight(USE_PREF_SIZE);
+        setMaxHeight(USE_PREF_SIZE);
+
+        var clip = new Rectangle();
+        clip.widthProperty().bind(widthProperty());
+        clip.heightProperty().bind(heightProperty());
+        setClip(clip);
+
+        setOnScroll(event -> scrollTo(first + (event.getDeltaY() < 0 ? 1 : -1)));
+    }
+
+    /**
+     * Show new scores. Safe to call from any thread, as often as scores arrive.
+     * @param entries every player's standing, in any order
+     */
+    public void update(List<Entry> entries) {
+        pending.set(entries);
+        if (queued.compareAndSet(false, true)) {
+            Platform.runLater(this::apply);
+        }
+    }
+
+    /**
+     * Show the ranks starting from the given one
+     * @param rank first rank to show
+     */
+    public void scrollTo(int rank) {
+        int last = Math.max(0, ranked.size() - visibleRows);
+        int clamped = Math.max(0, Math.min(last, rank));
+        if (clamped == first) return;
+        first = clamped;
+        layoutRows(false);
+    }
+
+    /**
+     * Apply the latest scores
+     */
+    private void apply() {
+        queued.set(false);
+        var entries = pending.getAndSet(null);
+        if (entries == null) return;
+
+        var sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingInt(Entry::score).reversed());
+        ranked = sorted;
+        first = Math.max(0, Math.min(first, ranked.size() - visibleRows));
+        layoutRows(true);
+    }
+
+    /**
+     * Give each rank in view a row, reusing the rows already shown for the same players, and put them in place
+     * @param animate true to slide rows which changed rank, false to move them straight there
+     */
+    private void layoutRows(boolean animate) {
+        int end = Math.min(ranked.size(), first + visibleRows);
+        var inView = new HashMap<String, Row>();
+        var entering = new ArrayList<Integer>();
+
+        for (int rank = first; rank < end; rank++) {
+            var entry = ranked.get(rank);
+            var row = shown.remove(entry.name());
+            if (row == null) {
+                entering.add(rank);
+            } else {
+                inView.put(entry.name(), row);
+            }
+        }
+
+        //Anyone left has dropped out of view, their rows are free for those coming in
+        for (var row : shown.values()) {
+            row.text.setVisible(false);
+            spare.push(row);
+        }
+        shown.clear();
+
+        for (int rank : entering) {
+            var row = spare.isEmpty() ? createRow() : spare.pop();
+            row.text.setVisible(true);
+            //New rows appear in place rather than sliding in from wherever they were last used
+            row.text.setTranslateY((rank - first) * ROW_HEIGHT);
+            row.from = row.to = row.text.getTranslateY();
+            inView.put(ranked.get(rank).name(), row);
+        }
+
+        var animations = animate ? AnimationEngine.forNode(this) : null;
+        for (int rank = first; rank < end; rank++) {
+            var entry = ranked.get(rank);
+            var row = inView.get(entry.name());
+            var label = entry.name() + ": " + entry.score();
+            if (!label.equals(row.text.getText())) row.text.setText(label);
+
+            double target = (rank - first) * ROW_HEIGHT;
+            if (target == row.to) continue;
+            row.from = row.text.getTranslateY();
+            row.to = target;
+            row.start = 0;
+            if (animations != null) {
+                animations.add(row.slide);
+            } else {
+                row.text.setTranslateY(target);
+            }
+        }
+        shown.putAll(inView);
+        logger.debug("Leaderboard showing {} of {} players", shown.size(), ranked.size());
+    }
+
+    /**
+     * Make a new row node
+     * @return the row
+     */
+    private Row createRow() {
+        var text = new Text();
+        text.getStyleClass().add("heading");
+        text.setTextOrigin(VPos.TOP);
+        text.setBoundsType(TextBoundsType.LOGICAL);
+        getChildren().add(text);
+        return new Row(text);
+    }
+}
@@ -31,4 +31,20 @@ public class PieceBoard extends GameBoard{
         //We do x and y = 1 as we account for offset. Offset subtracts 1 from both creating a negative answer if we put x and y = 0.
         grid.playPiece(gp, 1, 1);
     }
+
+    /**
+     * Outline the piece shown, to point out a hint which needs it, or remove the outline
+     * @param highlight true to outline the piece
+     */
+    public void highlight(boolean highlight) {
+        long cells = 0;
+        if (highlight) {
+            for (var y = 0; y < grid.getRows(); y++) {
+                for (var x = 0; x < grid.getCols(); x++) {
+                    if (blocks[x][y].getValue() != 0) cells |= 1L << (y * grid.getCols() + x);
+                }
+            }
+        }
+        showHint(cells, true);
+    }
 }
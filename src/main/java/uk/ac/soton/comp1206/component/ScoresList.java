@@ -2,34 +2,58 @@ package uk.ac.soton.comp1206.component;
 
 import javafx.animation.FadeTransition;
 import javafx.beans.property.SimpleListProperty;
-import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
+import javafx.scene.Node;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
 import javafx.util.Duration;
 import javafx.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import uk.ac.soton.comp1206.scene.MenuScene;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 /**
  * ScoresList class that displays the scores achieved
-
+ *
+ * Each row is keyed by its name and score, so when the list changes the rows which are still there are kept and
+ * moved into place, rows which have gone are dropped, and only new rows are created and faded in. Nothing is held
+ * for rows which are no longer shown.
  */
 public class ScoresList extends VBox {
     private static final Logger logger = LogManager.getLogger(ScoresList.class);
+
+    /**
+     * Delay between each new row starting to fade in
+     */
+    private static final int STAGGER = 200;
+
+    /**
+     * Most rows which are staggered, any more new rows than this fade in together with the last
+     */
+    private static final int MAX_STAGGERED = 10;
+
     /**
      * Holds all the scores achieved
      */
     public SimpleListProperty<Pair<String, Integer>> scoresList = new SimpleListProperty<>();
-//    private ArrayList<VBox> scores = new ArrayList<>();
+
+    /**
+     * Identifies a row, the same name and score appearing more than once are told apart by which occurrence they are
+     * @param name player name
+     * @param score score
+     * @param occurrence how many rows before this one had the same name and score
+     */
+    private record RowKey(String name, int score, int occurrence) {}
+
     /**
-     * Scores to be displayed
+     * Rows currently shown, by key
      */
-    private ArrayList<Text> scores = new ArrayList<>();
-    //Recreate list everytime a new score is added
+    private Map<RowKey, Text> rows = new HashMap<>();
 
     /**
      * Creates a new ScoreList
@@ -41,17 +65,52 @@ public class ScoresList extends VBox {
     }
 
     /**
-     * Creates a scores list
+     * Brings the rows up to date with the scores, reusing the rows which are still there and fading in any new ones
      */
     public void createList() {
-        logger.info("Creates a list");
-        getChildren().clear();
+        var counts = new HashMap<Pair<String, Integer>, Integer>();
+        var kept = new HashMap<RowKey, Text>();
+        var children = new ArrayList<Node>(scoresList.size());
+        var added = new ArrayList<Text>();
+
         for (Pair<String, Integer> s: scoresList) {
-            var text = new Text(s.getKey() + ": " + s.getValue());
-            text.getStyleClass().add("heading");
-            getChildren().add(text);
-            scores.add(text);
-            reveal();
+            int occurrence = counts.merge(s, 1, Integer::sum) - 1;
+            var key = new RowKey(s.getKey(), s.getValue(), occurrence);
+            var text = rows.get(key);
+            if (text == null) {
+                text = new Text(s.getKey() + ": " + s.getValue());
+                text.getStyleClass().add("heading");
+                added.add(text);
+            }
+            kept.put(key, text);
+            children.add(text);
+        }
+
+        logger.info("Updating scores list: {} rows, {} new, {} removed", children.size(), added.size(),
+                rows.size() - (children.size() - added.size()));
+        rows = kept;
+        arrange(children);
+        reveal(added);
+    }
+
+    /**
+     * Put the rows in the given order, removing, inserting or moving only the rows which are out of place, so the rows
+     * which have not moved stay attached to the scene
+     * @param children rows in the order they should be shown
+     */
+    private void arrange(List<Node> children) {
+        var shown = getChildren();
+        var wanted = new HashSet<Node>(children);
+        //Drop the rows which have gone, from the end so the indexes still to visit do not shift
+        for (int i = shown.size() - 1; i >= 0; i--) {
+            if (!wanted.contains(shown.get(i))) shown.remove(i);
+        }
+        for (int i = 0; i < children.size(); i++) {
+            var child = children.get(i);
+            if (i < shown.size() && shown.get(i) == child) continue;
+            //A row further down is moved up into place, a new row is inserted
+            shown.remove(child);
+            shown.add(i, child);
         }
     }
 
@@ -65,19 +124,31 @@ public class ScoresList extends VBox {
     }
 
     /**
-     * Reveal animation for scores
+     * Reveal animation for every score shown
      */
     public void reveal() {
+        var shown = new ArrayList<Text>();
+        for (Node child : getChildren()) {
+            if (child instanceof Text text) shown.add(text);
+        }
+        reveal(shown);
+    }
+
+    /**
+     * Reveal animation for the given rows, one after another
+     * @param texts rows to fade in
+     */
+    private void reveal(List<Text> texts) {
         int initialDelay = 0;
-        for (Text text: scores) {
+        for (int i = 0; i < texts.size(); i++) {
+            var text = texts.get(i);
             text.setOpacity(0);
             FadeTransition fade = new FadeTransition(new Duration(1000), text);
             fade.setDelay(new Duration(initialDelay));
             fade.setFromValue(0);
             fade.setToValue(1);
-            initialDelay += 200;
+            if (i < MAX_STAGGERED - 1) initialDelay += STAGGER;
             fade.play();
         }
-
     }
 }
@@ -0,0 +1,16 @@
+package uk.ac.soton.comp1206.event;
+
+/**
+ * The Grid Changed listener is used to publish changes to the cells of a Grid, so that visual components can follow
+ * the model without binding a property to every cell.
+ */
+public interface GridChangedListener {
+
+    /**
+     * Handle a cell in the grid changing value
+     * @param x column of the cell
+     * @param y row of the cell
+     * @param value the new value of the cell
+     */
+    void gridChanged(int x, int y, int value);
+}
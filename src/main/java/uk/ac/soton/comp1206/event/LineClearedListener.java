@@ -1,8 +1,6 @@
 package uk.ac.soton.comp1206.event;
 
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
-
-import java.util.HashSet;
+import uk.ac.soton.comp1206.game.CellSet;
 
 /**
  * LineClearedListener listens for when a line is filled and clears that line
@@ -11,7 +9,7 @@ import java.util.HashSet;
 public interface LineClearedListener {
     /**
      * Handles the clearing of lines
-     * @param coordinates Coordinates of where the lines that need to be cleared are
+     * @param cells Cells of the lines that have been cleared. The set is reused, so copy it to keep it
      */
-    void lineCleared(HashSet<GameBlockCoordinate> coordinates);
+    void lineCleared(CellSet cells);
 }
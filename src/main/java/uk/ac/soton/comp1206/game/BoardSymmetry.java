@@ -0,0 +1,297 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * BoardSymmetry maps positions on a grid of a given size onto each other under the symmetries of the board: the four
+ * rotations and four reflections of a square board, or the two reflections and half turn of a rectangular one.
+ *
+ * Two positions related by a symmetry play exactly the same, provided the pieces are transformed too: a rotation of
+ * the board turns every piece, a reflection mirrors it, which turns some pieces into one another (an L into a J). Folding
+ * the symmetries into a canonical key lets caches share one entry between all eight equivalent positions.
+ *
+ * Occupancy bitboards are transformed a byte at a time through precomputed tables, so a transform is a handful of
+ * lookups rather than a loop over the cells. Tables are shared between every grid of the same size.
+ */
+public class BoardSymmetry {
+
+    /**
+     * Number of symmetries of a square board
+     */
+    public static final int COUNT = 8;
+
+    /**
+     * The symmetry which leaves the board as it is
+     */
+    public static final int IDENTITY = 0;
+
+    /**
+     * Tables which have already been built, keyed by the grid size
+     */
+    private static final Map<Integer, BoardSymmetry> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Number of columns in the grid this table is for
+     */
+    private final int cols;
+
+    /**
+     * Number of rows in the grid this table is for
+     */
+    private final int rows;
+
+    /**
+     * Whether each symmetry maps the grid onto itself; the quarter turns and diagonal reflections need a square grid
+     */
+    private final boolean[] valid = new boolean[COUNT];
+
+    /**
+     * Cell each cell is moved to by each symmetry
+     */
+    private final int[][] cellMap;
+
+    /**
+     * Transformed bits for each symmetry, each byte of the bitboard, and each value of that byte
+     */
+    private final long[][][] byteTables;
+
+    /**
+     * Piece each piece becomes under each symmetry
+     */
+    private final int[][] pieceMap = new int[COUNT][GamePiece.PIECES];
+
+    /**
+     * Rotation each piece and rotation ends up in under each symmetry, once mapped to its new piece
+     */
+    private final int[][][] rotationMap = new int[COUNT][GamePiece.PIECES][GamePiece.ROTATIONS];
+
+    /**
+     * Get the symmetries of a grid with the given number of columns and rows, building them if needed
+     * @param cols number of columns
+     * @param rows number of rows
+     * @return the symmetries for that grid size
+     */
+    public static BoardSymmetry forGrid(int cols, int rows) {
+        return tables.computeIfAbsent(cols * Grid.MAX_CELLS + rows, key -> new BoardSymmetry(cols, rows));
+    }
+
+    /**
+     * Build the tables for a grid with the given number of columns and rows
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    private BoardSymmetry(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+        int cells = cols * rows;
+
+        cellMap = new int[COUNT][cells];
+        for (int s = 0; s < COUNT; s++) {
+            valid[s] = cols == rows || s == IDENTITY || s == 2 || s == 4 || s == 5;
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < cols; x++) {
+                    int[] moved = move(s, x, y, cols, rows);
+                    cellMap[s][y * cols + x] = valid[s] ? moved[1] * cols + moved[0] : y * cols + x;
+                }
+            }
+        }
+
+        int chunks = (cells + 7) / 8;
+        byteTables = new long[COUNT][chunks][256];
+        for (int s = 0; s < COUNT; s++) {
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                for (int value = 0; value < 256; value++) {
+                    long mask = 0;
+                    for (int bit = 0; bit < 8; bit++) {
+                        int cell = chunk * 8 + bit;
+                        if (cell < cells && (value & (1 << bit)) != 0) mask |= 1L << cellMap[s][cell];
+                    }
+                    byteTables[s][chunk][value] = mask;
+                }
+            }
+        }
+
+        buildPieceMaps();
+    }
+
+    /**
+     * Move a cell by a symmetry
+     * @param symmetry symmetry number
+     * @param x column
+     * @param y row
+     * @param cols number of columns
+     * @param rows number of rows
+     * @return the new column and row
+     */
+    private static int[] move(int symmetry, int x, int y, int cols, int rows) {
+        int right = cols - 1;
+        int bottom = rows - 1;
+        return switch (symmetry) {
+            case 1 -> new int[] { bottom - y, x };          //Quarter turn clockwise
+            case 2 -> new int[] { right - x, bottom - y };  //Half turn
+            case 3 -> new int[] { y, right - x };           //Quarter turn anticlockwise
+            case 4 -> new int[] { right - x, y };           //Mirror left to right
+            case 5 -> new int[] { x, bottom - y };          //Mirror top to bottom
+            case 6 -> new int[] { y, x };                   //Mirror in the leading diagonal
+            case 7 -> new int[] { bottom - y, right - x };  //Mirror in the other diagonal
+            default -> new int[] { x, y };
+        };
+    }
+
+    /**
+     * Work out which piece and rotation every piece and rotation becomes under each symmetry, by transforming its
+     * blocks about the centre of its 3x3 grid and finding the orientation with the same shape
+     */
+    private void buildPieceMaps() {
+        for (int s = 0; s < COUNT; s++) {
+            for (int piece = 0; piece < GamePiece.PIECES; piece++) {
+                for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                    int shape = shape(GamePiece.createPiece(piece, rotation), s);
+                    rotationMap[s][piece][rotation] = -1;
+                    //Prefer the same piece, so symmetric pieces keep their identity
+                    for (int candidate = 0; candidate < GamePiece.PIECES && rotationMap[s][piece][rotation] < 0; candidate++) {
+                        int target = (piece + candidate) % GamePiece.PIECES;
+                        for (int r = 0; r < GamePiece.ROTATIONS; r++) {
+                            if (shape(GamePiece.createPiece(target, r), IDENTITY) == shape) {
+                                pieceMap[s][piece] = target;
+                                rotationMap[s][piece][rotation] = r;
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the shape of a piece after a symmetry, as a 9 bit mask of its 3x3 grid
+     * @param gp the piece
+     * @param symmetry symmetry number
+     * @return shape mask
+     */
+    private static int shape(GamePiece gp, int symmetry) {
+        int shape = 0;
+        for (int x = 0; x < 3; x++) {
+            for (int y = 0; y < 3; y++) {
+                if (gp.getBlock(x, y) == 0) continue;
+                int[] moved = move(symmetry, x, y, 3, 3);
+                shape |= 1 << (moved[1] * 3 + moved[0]);
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * Check whether a symmetry maps this grid onto itself
+     * @param symmetry symmetry number
+     * @return true if the symmetry applies to this grid
+     */
+    public boolean isValid(int symmetry) {
+        return valid[symmetry];
+    }
+
+    /**
+     * Get the symmetry which undoes another
+     * @param symmetry symmetry number
+     * @return inverse symmetry number
+     */
+    public static int inverse(int symmetry) {
+        //Only the quarter turns are not their own inverse
+        return symmetry == 1 ? 3 : symmetry == 3 ? 1 : symmetry;
+    }
+
+    /**
+     * Transform a bitboard, such as the occupancy or a placement mask
+     * @param symmetry symmetry number
+     * @param mask bitboard in the Grid's layout
+     * @return transformed bitboard
+     */
+    public long transform(int symmetry, long mask) {
+        long[][] table = byteTables[symmetry];
+        long result = 0;
+        for (int chunk = 0; chunk < table.length && mask != 0; chunk++) {
+            result |= table[chunk][(int) (mask & 0xFF)];
+            mask >>>= 8;
+        }
+        return result;
+    }
+
+    /**
+     * Transform a single cell
+     * @param symmetry symmetry number
+     * @param x column
+     * @param y row
+     * @return index of the transformed cell, y * cols + x
+     */
+    public int transformCell(int symmetry, int x, int y) {
+        return cellMap[symmetry][y * cols + x];
+    }
+
+    /**
+     * Get the piece a piece becomes under a symmetry; a reflection turns some pieces into their mirror image
+     * @param symmetry symmetry number
+     * @param piece piece number
+     * @return transformed piece number
+     */
+    public int transformPiece(int symmetry, int piece) {
+        return pieceMap[symmetry][piece];
+    }
+
+    /**
+     * Get the rotation a piece ends up in under a symmetry, as a rotation of the piece given by transformPiece
+     * @param symmetry symmetry number
+     * @param piece piece number
+     * @param rotation rotation of the piece
+     * @return transformed rotation
+     */
+    public int transformRotation(int symmetry, int piece, int rotation) {
+        return rotationMap[symmetry][piece][rotation];
+    }
+
+    /**
+     * Get the canonical form of an occupancy bitboard: the smallest of its transforms under every symmetry of the grid.
+     * Positions which are symmetric to one another share the same canonical form.
+     * @param occupancy occupancy bitboard
+     * @return canonical occupancy
+     */
+    public long canonical(long occupancy) {
+        return transform(canonicalSymmetry(occupancy), occupancy);
+    }
+
+    /**
+     * Find the symmetry which takes an occupancy bitboard to its canonical form, the first if several do
+     * @param occupancy occupancy bitboard
+     * @return symmetry number
+     */
+    public int canonicalSymmetry(long occupancy) {
+        int best = IDENTITY;
+        long min = occupancy;
+        for (int s = 1; s < COUNT; s++) {
+            if (!valid[s]) continue;
+            long transformed = transform(s, occupancy);
+            if (Long.compareUnsigned(transformed, min) < 0) {
+                min = transformed;
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Get the number of columns in the grid this table is for
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows in the grid this table is for
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,104 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A CellSet is a reusable set of cells on a grid, held as a bitmask in the same layout as the Grid's occupancy
+ * bitboard (bit y * cols + x). It is filled in place rather than allocated, so it can be handed to listeners on every
+ * placement without creating garbage.
+ *
+ * Listeners which want to keep the cells beyond the callback should copy the mask out with getCells.
+ */
+public class CellSet {
+
+    /**
+     * Receives each cell in a CellSet
+     */
+    public interface CellVisitor {
+        /**
+         * Handle a single cell
+         * @param x column
+         * @param y row
+         */
+        void visit(int x, int y);
+    }
+
+    /**
+     * Number of columns in the grid these cells belong to
+     */
+    private final int cols;
+
+    /**
+     * Bitmask of the cells in this set
+     */
+    private long cells = 0;
+
+    /**
+     * Create a new, empty CellSet for a grid with the given number of columns
+     * @param cols number of columns
+     */
+    public CellSet(int cols) {
+        this.cols = cols;
+    }
+
+    /**
+     * Replace the cells in this set
+     * @param cells bitmask of cells
+     */
+    public void set(long cells) {
+        this.cells = cells;
+    }
+
+    /**
+     * Get the bitmask of cells in this set
+     * @return bitmask of cells
+     */
+    public long getCells() {
+        return cells;
+    }
+
+    /**
+     * Get the number of columns in the grid these cells belong to
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of cells in this set
+     * @return number of cells
+     */
+    public int size() {
+        return Long.bitCount(cells);
+    }
+
+    /**
+     * Check if this set holds no cells
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return cells == 0;
+    }
+
+    /**
+     * Check whether a cell is in this set
+     * @param x column
+     * @param y row
+     * @return true if the cell is in the set
+     */
+    public boolean contains(int x, int y) {
+        return (cells & (1L << (y * cols + x))) != 0;
+    }
+
+    /**
+     * Visit every cell in this set
+     * @param visitor called with the column and row of each cell
+     */
+    public void forEach(CellVisitor visitor) {
+        long remaining = cells;
+        while (remaining != 0) {
+            int index = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            visitor.visit(index % cols, index / cols);
+        }
+    }
+}
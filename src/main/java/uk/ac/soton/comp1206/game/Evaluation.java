@@ -0,0 +1,69 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * Evaluation scores a board position for the automatic players: the simulation policies and the hint engine. It works
+ * entirely on occupancy bitboards, so it can be called many times per move without touching a Grid.
+ *
+ * Higher is better. Clearing lines counts for most, then keeping blocks together, and empty cells boxed in on every
+ * side count against the position as only a Dot can fill them.
+ */
+public class Evaluation {
+
+    /**
+     * Value of each line cleared
+     */
+    public static final int LINE = 100;
+
+    /**
+     * Cost of each empty cell with no empty neighbour
+     */
+    public static final int ISOLATED = 10;
+
+    /**
+     * Score a board just after a piece has been placed, before any lines are cleared
+     * @param masks placement masks for the grid size
+     * @param placed occupancy bitboard with the piece placed
+     * @return score of the position, higher is better
+     */
+    public static int score(PlacementMasks masks, long placed) {
+        long full = masks.fullLines(placed);
+        int lines = full == 0 ? 0 : masks.countFullLines(placed);
+        long remaining = placed & ~full;
+        return lines * LINE + adjacentPairs(masks, remaining) - ISOLATED * isolatedEmpty(masks, remaining);
+    }
+
+    /**
+     * Count horizontally and vertically adjacent pairs of filled cells
+     * @param masks placement masks for the grid size
+     * @param occupancy occupancy bitboard
+     * @return number of adjacent filled pairs
+     */
+    public static int adjacentPairs(PlacementMasks masks, long occupancy) {
+        int cols = masks.getCols();
+        //Shifting right by one moves every cell one column left, so drop the cells that would wrap onto the row above
+        long notLastColumn = masks.getBoardMask() & ~masks.getColumnMask(cols - 1);
+        long horizontal = occupancy & notLastColumn & (occupancy >>> 1);
+        long vertical = occupancy & (occupancy >>> cols);
+        return Long.bitCount(horizontal) + Long.bitCount(vertical);
+    }
+
+    /**
+     * Count empty cells which have no empty neighbour
+     * @param masks placement masks for the grid size
+     * @param occupancy occupancy bitboard
+     * @return number of isolated empty cells
+     */
+    public static int isolatedEmpty(PlacementMasks masks, long occupancy) {
+        int cols = masks.getCols();
+        long board = masks.getBoardMask();
+        long empty = board & ~occupancy;
+        long notFirstColumn = board & ~masks.getColumnMask(0);
+        long notLastColumn = board & ~masks.getColumnMask(cols - 1);
+        //Cells which have an empty neighbour in any direction
+        long hasEmptyNeighbour = ((empty << 1) & notFirstColumn)
+                | ((empty >>> 1) & notLastColumn)
+                | ((empty << cols) & board)
+                | (empty >>> cols);
+        return Long.bitCount(empty & ~hasEmptyNeighbour);
+    }
+}
@@ -6,22 +6,18 @@ import javafx.beans.property.SimpleIntegerProperty;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.component.GameBlock;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
-import uk.ac.soton.comp1206.component.GameBoard;
 import uk.ac.soton.comp1206.event.*;
-import uk.ac.soton.comp1206.scene.ChallengeScene;
 import uk.ac.soton.comp1206.ui.Multimedia;
 
-import java.util.HashSet;
-import java.util.Random;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
- * The Game class handles the main logic, state and properties of the TetrECS game. Methods to manipulate the game state
- * and to handle actions made by the player should take place inside this class.
+ * The Game class handles the state and properties of the TetrECS game for the user interface. The rules themselves live
+ * in the GameEngine, which this class drives: it exposes the engine's state as properties for binding, runs the game
+ * loop timer, plays sounds and tells the scene about what has happened through listeners.
  */
 public class Game {
 
@@ -38,17 +34,14 @@ public class Game {
     protected final int cols;
 
     /**
-     * The grid model linked to the game
+     * The engine holding the rules and state of this game
      */
-    protected final Grid grid;
-    /**
-     * Current game piece
-     */
-    public GamePiece currentPiece;
+    protected final GameEngine engine;
+
     /**
-     * Next game piece which can be swapped with current piece
+     * The grid model linked to the game
      */
-    public GamePiece nextPiece;
+    protected final Grid grid;
     /**
      * Initialises the score variable
      */
@@ -60,15 +53,11 @@ public class Game {
     /**
      * Initialises the lives variable
      */
-    public IntegerProperty lives = new SimpleIntegerProperty(3);
+    public IntegerProperty lives = new SimpleIntegerProperty(GameEngine.STARTING_LIVES);
     /**
      * Initialises the multiplier variable
      */
     public IntegerProperty multiplier = new SimpleIntegerProperty(1);
-    /**
-     * Initialises number of blocks to be seen in Game method
-     */
-    private int numOfBlocks = 0;
     /**
      * Next Piece Listener
      */
@@ -99,10 +88,6 @@ public class Game {
      * Old value of level
      */
     private int oldLevel = 0;
-    /**
-     * Current game mode
-     */
-    public String mode;
 
     /**
      * Create a new game with the specified rows and columns. Creates a corresponding grid model.
@@ -110,11 +95,24 @@ public class Game {
      * @param rows number of rows
      */
     public Game(int cols, int rows) {
+        this(cols, rows, new RandomPieceSource());
+    }
+
+    /**
+     * Create a new game with the specified rows and columns, dealing pieces from the given source. Creates a
+     * corresponding grid model.
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param pieceSource deals each new piece, for example a seeded RandomPieceSource to replay a game
+     */
+    public Game(int cols, int rows, PieceSource pieceSource) {
         this.cols = cols;
         this.rows = rows;
 
-        //Create a new grid model to represent the game state
-        this.grid = new Grid(cols,rows);
+        //Create a new engine, and with it the grid model, to represent the game state
+        this.engine = new GameEngine(cols, rows);
+        this.grid = engine.getGrid();
+        engine.setPieceSource(pieceSource);
         //Creates a single threaded scheduled executor, so you can only execute one thread at a time
         timer = Executors.newSingleThreadScheduledExecutor();
     }
@@ -137,8 +135,13 @@ public class Game {
      */
     public void initialiseGame() {
         logger.info("Initialising game");
-        this.nextPiece = spawnPiece();
-        nextPiece();
+        if (engine.getPieceSource() instanceof RandomPieceSource source) {
+            logger.info("Piece seed: {}", source.getSeed());
+        }
+        engine.start();
+        if (nextPieceListener != null) {
+            nextPieceListener.nextPiece(getCurrentPiece());
+        }
     }
 
     /**
@@ -151,9 +154,9 @@ public class Game {
         int y = gameBlock.getY();
 
         //Checks if you can play the piece then, places the piece and gets a new piece
-        if (grid.canPlayPiece(currentPiece,x,y)) {
+        if (engine.canPlayPiece(x,y)) {
             gameLoopListener();
-            grid.playPiece(currentPiece,x,y);
+            engine.playPiece(x,y);
             Multimedia.playAudio("place.wav");
             afterPiece();
             nextPiece();
@@ -171,7 +174,23 @@ public class Game {
      * @return Return current piece
      */
     public GamePiece getCurrentPiece() {
-        return currentPiece;
+        return engine.getCurrentPiece();
+    }
+
+    /**
+     * Retrieve next piece
+     * @return Return next piece
+     */
+    public GamePiece getNextPiece() {
+        return engine.getNextPiece();
+    }
+
+    /**
+     * Get the engine holding the rules and state of this game
+     * @return game engine
+     */
+    public GameEngine getEngine() {
+        return engine;
     }
 
     /**
@@ -203,17 +222,14 @@ public class Game {
      */
     public void nextPiece() {
         logger.info("Next piece is created");
-        //Current piece becomes next piece
-        currentPiece = nextPiece;
-        //Next piece gets another piece
-        nextPiece = spawnPiece();
+        engine.nextPiece();
 
-        logger.info("Current piece is " + currentPiece);
-        logger.info("Next piece is " + nextPiece);
+        logger.info("Current piece is {}", getCurrentPiece());
+        logger.info("Next piece is {}", getNextPiece());
         //If next piece occurs, call nextPiece method on currentPiece to get the next piece from nextPiece variable
         //same object references as in challenge scene
         if (nextPieceListener != null) {
-            nextPieceListener.nextPiece(currentPiece);
+            nextPieceListener.nextPiece(getCurrentPiece());
         }
     }
 
@@ -226,143 +242,28 @@ public class Game {
         nextPieceListener = listener;
     }
 
-    /**
-     * Uses random number generator to select a random piece from list of pieces.
-     * @return returns random piece that has been selected from random num generator
-     */
-
-    public GamePiece spawnPiece() {
-        logger.info("Selects a random piece from list of pieces");
-        int maxPieces = GamePiece.PIECES;
-        Random random = new Random();
-        var randomPiece = random.nextInt(maxPieces);
-        logger.info("Picking a random piece: {}", randomPiece);
-        var piece = GamePiece.createPiece(randomPiece);
-        return piece;
-    }
-
     /**
      * Contains logic to handle the clearance of the lines
      */
     public void afterPiece() {
-        logger.info("This method contains the logic handling the clearance of lines");
-        int linesCleared = 0;
-        //HashSet of GameBlockCoordinates which keeps track of how many lines need to be cleared
-        var cleared = new HashSet<GameBlockCoordinate>();
-        //HashSet of GameBlockCoordinates which keeps track of how many blocks need to be reset
-        var reset = new HashSet<GameBlockCoordinate>();
-        //Horizontal clearing of lines, left to right
-        //Iterate through the grid
-        for (int x = 0; x < rows; x++) {
-            int counter = 0;
-            for (int y = 0; y < cols; y++) {
-                //Checks if there is a block in the coordinate x,y. If there is you increment counter
-                if (grid.get(x, y) != 0) {
-                    counter++;
-                }
-                //Checks if there are 5 blocks in a row, if counter = rows then there is a line present
-                if (counter == rows) {
-                    linesCleared++;
-                    for (y = 0; y < rows; y++) {
-                        cleared.add(new GameBlockCoordinate(x, y));
-                        reset.add(new GameBlockCoordinate(x, y));
-                    }
-                }
-            }
-        }
-
-        // 0 0 0 0 0
-        // 0 0 0 0 0
-        // 0 0 0 0 0
-        // 0 0 0 0 0
-        // 0 0 0 0 0
-
-        //Vertical clearing of lines, up to down
-        //Iterate through the grid
-        for (int y = 0; y < cols; y++) {
-            int counter = 0;
-            for (int x = 0; x < rows; x++) {
-                //Checks if there is a block in the coordinate x,y. If there is you increment counter
-                if (grid.get(x,y) != 0) {
-                    counter++;
-                }
-                //Checks if there are 5 blocks in a row, if counter = rows then there is a line present
-                if (counter == rows) {
-                    linesCleared++;
-                    //As y = ? has a line to clear, you loop through x again and add them all to the HashSet
-                    for (x = 0; x < cols; x++) {
-                        cleared.add(new GameBlockCoordinate(x, y));
-                        reset.add(new GameBlockCoordinate(x, y));
-                    }
-                }
-            }
-        }
-        for (GameBlockCoordinate g: cleared) {
-            int x = g.getX();
-            int y = g.getY();
-            if (grid.get(x,y) != 0) {
-                numOfBlocks++;
-            }
-        }
-
-        logger.info("Num of blocks = " + numOfBlocks);
-
-        for (GameBlockCoordinate g: reset) {
-            int x = g.getX();
-            int y = g.getY();
-            if (grid.get(x,y) != 0) {
-                grid.set(x,y,0);
-            }
-        }
-        if (lineClearedListener != null) {
-            lineClearedListener.lineCleared(cleared);
-        }
-        score(linesCleared, numOfBlocks);
-        multiplier(linesCleared);
-        level();
-    }
-
-    /**
-     * Adds the scores depending on how many lines the user clears
-     * @param numOfLines number of lines cleared
-     * @param numOfBlocks number of blocks cleared
-     */
-    protected void score(int numOfLines, int numOfBlocks) {
-        logger.info("Method which implements the scoring system");
-        //If number of lines cleared = 0 then there is no score to be added
-        if (numOfLines == 0) {
-            return;
-        }
-        //Gets multiplier (different as it's a simpleintegerproperty)
-        int mul = multiplier.get();
-        int toAdd = numOfLines * numOfBlocks * 10 * mul;
-        score.setValue(score.get() + toAdd);
-    }
+        logger.debug("This method contains the logic handling the clearance of lines");
+        int linesCleared = engine.afterPiece();
+        updateProperties();
 
-    /**
-     * multiplier method which increases multiplier if line is cleared and resets multiplier back to 1 if line isn't cleared
-     * @param numOfLines number of lines cleared
-     */
-    public void multiplier(int numOfLines) {
-        //Streak is number of consecutive times player has cleared a line
-        int streak = 0;
-        //If at least 1 line is cleared it increases streak and increases multiplier
-        if (numOfLines > 0) {
-            streak++;
-            multiplier.setValue(multiplier.get() + streak);
-        } else {
-            multiplier.setValue(1);
-            streak = 0;
+        if (lineClearedListener != null && linesCleared > 0) {
+            lineClearedListener.lineCleared(engine.getCleared());
         }
+        levelSound(level.get());
     }
 
     /**
-     * Retrieves the current level
+     * Copies the score, level, lives and multiplier from the engine into the properties the scenes are bound to
      */
-    public void level() {
-        logger.info("Method that implements the different levels a user is on");
-        level.setValue(score.get() / 1000);
-        levelSound(level.get());
+    protected void updateProperties() {
+        score.set(engine.getScore());
+        level.set(engine.getLevel());
+        lives.set(engine.getLives());
+        multiplier.set(engine.getMultiplier());
     }
 
     /**
@@ -377,11 +278,11 @@ public class Game {
     }
 
     /**
-     * Rotates current piece to the right
-     * @param gp GamePiece that needs to be rotated
+     * Rotates current piece to the right the given number of times
+     * @param rotations number of quarter turns, negative to rotate left
      */
-    public void rotateCurrentPiece(GamePiece gp) {
-        currentPiece.rotate();
+    public void rotateCurrentPiece(int rotations) {
+        engine.rotateCurrentPiece(rotations);
     }
 
     /**
@@ -389,9 +290,7 @@ public class Game {
      */
 
     public void swapCurrentPiece() {
-        GamePiece temp = currentPiece;
-        currentPiece = nextPiece;
-        nextPiece = temp;
+        engine.swapCurrentPiece();
     }
 
     /**
@@ -406,15 +305,7 @@ public class Game {
      * Calculates delay at the maximum of 2500 ms or 12000-500*current level
      */
     public int getTimerDelay() {
-        if (mode.equals("easy")) {
-            return Math.max(20000 - 500 * level.get(), 2500);
-        } else if (mode.equals("normal")) {
-            return Math.max(12000 - 500 * level.get(), 2500);
-        } else if (mode.equals("challenge")) {
-            return Math.max(10000 - 500 * level.get(), 2500);
-        } else {
-            return Math.max(12000 - 500 * level.get(), 2500);
-        }
+        return engine.getTimerDelay();
     }
 
     /**
@@ -437,7 +328,15 @@ public class Game {
 
     public void select(String mode) {
         logger.info("Selected mode: " + mode);
-        this.mode = mode;
+        engine.setMode(mode);
+    }
+
+    /**
+     * Get the current game mode
+     * @return game mode
+     */
+    public String getMode() {
+        return engine.getMode();
     }
 
     /**
@@ -455,9 +354,9 @@ public class Game {
      * Removes a life or stops game when there are no lives left
      */
     protected void updateLives() {
-        if (lives.get() > 0) {
+        if (engine.loseLife()) {
             logger.info("Life lost");
-            lives.set(lives.get() - 1);
+            lives.set(engine.getLives());
             Multimedia.playAudio("lifelose.wav");
         } else {
             logger.info("Game over");
@@ -482,6 +381,7 @@ public class Game {
      */
     public void updateMultiplier() {
         logger.info("Multiplier set back to 1");
+        engine.resetMultiplier();
         multiplier.set(1);
     }
 
@@ -493,18 +393,4 @@ public class Game {
         this.gameOverListener = gameOverListener;
     }
 
-
-
-//    public void clear(HashSet<GameBlockCoordinate> hash) {
-//        for (GameBlockCoordinate g: hash) {
-//            int x = g.getX();
-//            int y = g.getY();
-//            if (grid.get(x,y) == 1) {
-//                grid.set(x,y,0);
-//            }
-//        }
-//    }
-
-
-
 }
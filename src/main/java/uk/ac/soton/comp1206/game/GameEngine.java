@@ -0,0 +1,420 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The GameEngine holds the rules of TetrECS: the board, the current and next pieces, scoring, the multiplier, levels,
+ * lives and the timer policy. It has no dependency on JavaFX, audio or threading, so it can be run headless from
+ * simulations, benchmarks and servers.
+ *
+ * The engine does nothing on its own. It is driven by whoever owns it, for example the Game class which adapts it for
+ * the user interface, schedules the game loop and plays sounds.
+ */
+public class GameEngine {
+
+    private static final Logger logger = LogManager.getLogger(GameEngine.class);
+
+    /**
+     * Number of lives a game starts with
+     */
+    public static final int STARTING_LIVES = 3;
+
+    /**
+     * Number of columns
+     */
+    private final int cols;
+
+    /**
+     * Number of rows
+     */
+    private final int rows;
+
+    /**
+     * The grid model for this game
+     */
+    private final Grid grid;
+
+    /**
+     * Cells cleared by the last piece, reused for every placement
+     */
+    private final CellSet cleared;
+
+    /**
+     * Deals each new piece
+     */
+    private PieceSource pieceSource = new RandomPieceSource();
+
+    /**
+     * Current game piece
+     */
+    private GamePiece currentPiece;
+
+    /**
+     * Next game piece which can be swapped with current piece
+     */
+    private GamePiece nextPiece;
+
+    /**
+     * Current score
+     */
+    private int score = 0;
+
+    /**
+     * Current level
+     */
+    private int level = 0;
+
+    /**
+     * Lives remaining
+     */
+    private int lives = STARTING_LIVES;
+
+    /**
+     * Current multiplier
+     */
+    private int multiplier = 1;
+
+    /**
+     * Running total of blocks cleared, used in the score for each clear
+     */
+    private int numOfBlocks = 0;
+
+    /**
+     * Total number of lines cleared this game
+     */
+    private int totalLines = 0;
+
+    /**
+     * Total number of pieces played this game
+     */
+    private int piecesPlayed = 0;
+
+    /**
+     * Set once the last life has been lost
+     */
+    private boolean gameOver = false;
+
+    /**
+     * Current game mode, decides the timer delay
+     */
+    private String mode = "normal";
+
+    /**
+     * Create a new engine with the specified rows and columns
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public GameEngine(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+        this.grid = new Grid(cols, rows);
+        this.cleared = new CellSet(cols);
+    }
+
+    /**
+     * Set where new pieces come from, by default a RandomPieceSource with a random seed
+     * @param pieceSource deals each new piece
+     */
+    public void setPieceSource(PieceSource pieceSource) {
+        this.pieceSource = pieceSource;
+    }
+
+    /**
+     * Get where new pieces come from
+     * @return piece source
+     */
+    public PieceSource getPieceSource() {
+        return pieceSource;
+    }
+
+    /**
+     * Set the game mode
+     * @param mode "easy", "normal" or "challenge"
+     */
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Get the game mode
+     * @return game mode
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Deal the first current and next pieces
+     */
+    public void start() {
+        nextPiece = spawnPiece();
+        nextPiece();
+    }
+
+    /**
+     * Get a new piece from the piece source
+     * @return new piece
+     */
+    public GamePiece spawnPiece() {
+        return pieceSource.next();
+    }
+
+    /**
+     * Changes current piece to the next piece and gives the next piece a new piece
+     */
+    public void nextPiece() {
+        currentPiece = nextPiece;
+        nextPiece = spawnPiece();
+    }
+
+    /**
+     * Check if the current piece can be played at the given position
+     * @param x column
+     * @param y row
+     * @return true if the piece can be played
+     */
+    public boolean canPlayPiece(int x, int y) {
+        return grid.canPlayPiece(currentPiece, x, y);
+    }
+
+    /**
+     * Put the current piece on the grid at the given position, without clearing lines or moving on to the next piece
+     * @param x column
+     * @param y row
+     * @return true if the piece was played
+     */
+    public boolean playPiece(int x, int y) {
+        if (!grid.canPlayPiece(currentPiece, x, y)) return false;
+        grid.playPiece(currentPiece, x, y);
+        piecesPlayed++;
+        return true;
+    }
+
+    /**
+     * Play a whole turn: put the current piece on the grid, clear any lines and move on to the next piece
+     * @param x column
+     * @param y row
+     * @return the number of lines cleared, or -1 if the piece could not be played
+     */
+    public int play(int x, int y) {
+        if (!playPiece(x, y)) return -1;
+        int lines = afterPiece();
+        nextPiece();
+        return lines;
+    }
+
+    /**
+     * Clear any lines completed by the last piece and update the score, multiplier and level
+     * @return number of lines cleared
+     */
+    public int afterPiece() {
+        //Only the rows and columns the last piece touched can have been completed by it
+        int linesCleared = grid.clearFullLines(grid.getLastPlacement(), cleared);
+        numOfBlocks += cleared.size();
+        totalLines += linesCleared;
+
+        score(linesCleared, numOfBlocks);
+        multiplier(linesCleared);
+        level();
+        return linesCleared;
+    }
+
+    /**
+     * Adds the scores depending on how many lines the user clears
+     * @param numOfLines number of lines cleared
+     * @param numOfBlocks number of blocks cleared
+     */
+    private void score(int numOfLines, int numOfBlocks) {
+        //If number of lines cleared = 0 then there is no score to be added
+        if (numOfLines == 0) {
+            return;
+        }
+        score += numOfLines * numOfBlocks * 10 * multiplier;
+    }
+
+    /**
+     * Increases the multiplier if a line is cleared and resets it back to 1 if not
+     * @param numOfLines number of lines cleared
+     */
+    private void multiplier(int numOfLines) {
+        if (numOfLines > 0) {
+            multiplier++;
+        } else {
+            multiplier = 1;
+        }
+    }
+
+    /**
+     * Works out the level from the score
+     */
+    private void level() {
+        level = score / 1000;
+    }
+
+    /**
+     * Lose a life when the timer runs out. If there are no lives left the game is over instead.
+     * @return true if the game carries on, false if it is over
+     */
+    public boolean loseLife() {
+        if (lives > 0) {
+            lives--;
+            return true;
+        }
+        logger.trace("Game over");
+        gameOver = true;
+        return false;
+    }
+
+    /**
+     * Puts the multiplier back to 1
+     */
+    public void resetMultiplier() {
+        multiplier = 1;
+    }
+
+    /**
+     * Rotates current piece to the right the given number of times
+     * @param rotations number of quarter turns, negative to rotate left
+     */
+    public void rotateCurrentPiece(int rotations) {
+        currentPiece = currentPiece.rotate(rotations);
+    }
+
+    /**
+     * Swaps the current piece with the next piece
+     */
+    public void swapCurrentPiece() {
+        GamePiece temp = currentPiece;
+        currentPiece = nextPiece;
+        nextPiece = temp;
+    }
+
+    /**
+     * Calculates how long the player has to place a piece at the current level
+     * @return delay in milliseconds, never below 2500
+     */
+    public int getTimerDelay() {
+        return getTimerDelay(mode, level);
+    }
+
+    /**
+     * Calculates how long the player has to place a piece in a given mode and level
+     * @param mode "easy", "normal" or "challenge"
+     * @param level current level
+     * @return delay in milliseconds, never below 2500
+     */
+    public static int getTimerDelay(String mode, int level) {
+        if ("easy".equals(mode)) {
+            return Math.max(20000 - 500 * level, 2500);
+        } else if ("challenge".equals(mode)) {
+            return Math.max(10000 - 500 * level, 2500);
+        } else {
+            return Math.max(12000 - 500 * level, 2500);
+        }
+    }
+
+    /**
+     * Get the grid model for this game
+     * @return grid
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Get the number of columns
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the cells cleared by the last piece. The set is reused for every placement.
+     * @return cleared cells
+     */
+    public CellSet getCleared() {
+        return cleared;
+    }
+
+    /**
+     * Get the current piece
+     * @return current piece
+     */
+    public GamePiece getCurrentPiece() {
+        return currentPiece;
+    }
+
+    /**
+     * Get the next piece
+     * @return next piece
+     */
+    public GamePiece getNextPiece() {
+        return nextPiece;
+    }
+
+    /**
+     * Get the score
+     * @return score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Get the level
+     * @return level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Get the lives remaining
+     * @return lives
+     */
+    public int getLives() {
+        return lives;
+    }
+
+    /**
+     * Get the multiplier
+     * @return multiplier
+     */
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Get the total number of lines cleared this game
+     * @return lines cleared
+     */
+    public int getTotalLines() {
+        return totalLines;
+    }
+
+    /**
+     * Get the total number of pieces played this game
+     * @return pieces played
+     */
+    public int getPiecesPlayed() {
+        return piecesPlayed;
+    }
+
+    /**
+     * Check whether the game is over
+     * @return true once the last life has been lost
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+}
@@ -3,6 +3,10 @@ package uk.ac.soton.comp1206.game;
 /**
  * Instances of GamePiece Represents the model of a specific Game Piece with it's block makeup.
  *
+ * Every piece in every rotation is built once when the class is loaded and shared from then on. A GamePiece is
+ * immutable, so rotating a piece hands back the shared instance for the new orientation rather than changing the
+ * piece or allocating a new one. This makes pieces safe to share between games and threads.
+ *
  * The GamePiece class also contains a factory for producing a GamePiece of a particular shape, as specified by it's
  * number.
  */
@@ -13,10 +17,30 @@ public class GamePiece {
      */
     public static final int PIECES = 15;
 
+    /**
+     * The number of orientations each piece can be in
+     */
+    public static final int ROTATIONS = 4;
+
+    /**
+     * Every piece in every orientation, indexed by piece number and then rotation
+     */
+    private static final GamePiece[][] orientations = new GamePiece[PIECES][ROTATIONS];
+
+    static {
+        for (int piece = 0; piece < PIECES; piece++) {
+            orientations[piece][0] = shape(piece);
+            for (int rotation = 1; rotation < ROTATIONS; rotation++) {
+                var previous = orientations[piece][rotation - 1];
+                orientations[piece][rotation] = new GamePiece(previous.name, rotateBlocks(previous.blocks), previous.value, rotation);
+            }
+        }
+    }
+
     /**
      * The 2D grid representation of the shape of this piece
      */
-    private int[][] blocks;
+    private final int[][] blocks;
 
     /**
      * The value of this piece
@@ -28,101 +52,129 @@ public class GamePiece {
      */
     private final String name;
 
+    /**
+     * The number of clockwise quarter turns this piece is rotated by, between 0 and 3
+     */
+    private final int rotation;
+
     /**
      * Create a new GamePiece of the specified piece number
      * @param piece piece number
      * @return the created GamePiece
      */
     public static GamePiece createPiece(int piece) {
+        return createPiece(piece, 0);
+    }
+
+    /**
+     * Create a new GamePiece of the specified piece number and rotation
+     * @param piece piece number
+     * @param rotation number of times to rotate
+     * @return the created GamePiece
+     */
+    public static GamePiece createPiece(int piece, int rotation) {
+        if (piece < 0 || piece >= PIECES) {
+            //Not a valid piece number
+            throw new IndexOutOfBoundsException("No such piece: " + piece);
+        }
+        return orientations[piece][Math.floorMod(rotation, ROTATIONS)];
+    }
+
+    /**
+     * Build the starting orientation of the specified piece number. Only used while building the shared pieces.
+     * @param piece piece number
+     * @return the piece in its starting orientation
+     */
+    private static GamePiece shape(int piece) {
         switch (piece) {
             //Line
             case 0 -> {
                 int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {0, 0, 0}};
-                return new GamePiece("Line", blocks, 1);
+                return build("Line", blocks, 1);
             }
 
             //C
             case 1 -> {
                 int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {1, 0, 1}};
-                return new GamePiece("C", blocks, 2);
+                return build("C", blocks, 2);
             }
 
             //Plus
             case 2 -> {
                 int[][] blocks = {{0, 1, 0}, {1, 1, 1}, {0, 1, 0}};
-                return new GamePiece("Plus", blocks, 3);
+                return build("Plus", blocks, 3);
             }
 
             //Dot
             case 3 -> {
                 int[][] blocks = {{0, 0, 0}, {0, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Dot", blocks, 4);
+                return build("Dot", blocks, 4);
             }
 
             //Square
             case 4 -> {
                 int[][] blocks = {{1, 1, 0}, {1, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Square", blocks, 5);
+                return build("Square", blocks, 5);
             }
 
             //L
             case 5 -> {
                 int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {0, 0, 1}};
-                return new GamePiece("L", blocks, 6);
+                return build("L", blocks, 6);
             }
 
             //J
             case 6 -> {
                 int[][] blocks = {{0, 0, 1}, {1, 1, 1}, {0, 0, 0}};
-                return new GamePiece("J", blocks, 7);
+                return build("J", blocks, 7);
             }
 
             //S
             case 7 -> {
                 int[][] blocks = {{0, 0, 0}, {0, 1, 1}, {1, 1, 0}};
-                return new GamePiece("S", blocks, 8);
+                return build("S", blocks, 8);
             }
 
             //Z
             case 8 -> {
                 int[][] blocks = {{1, 1, 0}, {0, 1, 1}, {0, 0, 0}};
-                return new GamePiece("Z", blocks, 9);
+                return build("Z", blocks, 9);
             }
 
             //T
             case 9 -> {
                 int[][] blocks = {{1, 0, 0}, {1, 1, 0}, {1, 0, 0}};
-                return new GamePiece("T", blocks, 10);
+                return build("T", blocks, 10);
             }
 
             //X
             case 10 -> {
                 int[][] blocks = {{1, 0, 1}, {0, 1, 0}, {1, 0, 1}};
-                return new GamePiece("X", blocks, 11);
+                return build("X", blocks, 11);
             }
 
             //Corner
             case 11 -> {
                 int[][] blocks = {{0, 0, 0}, {1, 1, 0}, {1, 0, 0}};
-                return new GamePiece("Corner", blocks, 12);
+                return build("Corner", blocks, 12);
             }
 
             //Inverse Corner
             case 12 -> {
                 int[][] blocks = {{1, 0, 0}, {1, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Inverse Corner", blocks, 13);
+                return build("Inverse Corner", blocks, 13);
             }
 
             //Diagonal
             case 13 -> {
                 int[][] blocks = {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}};
-                return new GamePiece("Diagonal", blocks, 14);
+                return build("Diagonal", blocks, 14);
             }
 
             //Double
             case 14 -> {
                 int[][] blocks = {{0, 1, 0}, {0, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Double", blocks, 15);
+                return build("Double", blocks, 15);
             }
         }
 
@@ -131,37 +183,58 @@ public class GamePiece {
     }
 
     /**
-     * Create a new GamePiece of the specified piece number and rotation
-     * @param piece piece number
-     * @param rotation number of times to rotate
-     * @return the created GamePiece
+     * Build a piece in its starting orientation from its name, shape and value
+     * @param name name of the piece
+     * @param blocks block makeup of the piece
+     * @param value the value of this piece
+     * @return the piece
      */
-    public static GamePiece createPiece(int piece, int rotation) {
-        var newPiece = createPiece(piece);
+    private static GamePiece build(String name, int[][] blocks, int value) {
+        //Use the shape of the block to create a grid with either 0 (empty) or the value of this shape for each block.
+        for(int x = 0; x < blocks.length; x++) {
+            for (int y = 0; y < blocks[x].length; y++) {
+                if(blocks[x][y] == 0) continue;
+                blocks[x][y] = value;
+            }
+        }
+        return new GamePiece(name, blocks, value, 0);
+    }
+
+    /**
+     * Rotate a 3x3 grid of blocks exactly once
+     * @param blocks blocks to rotate
+     * @return a new grid with the blocks rotated
+     */
+    private static int[][] rotateBlocks(int[][] blocks) {
+        int[][] rotated = new int[blocks.length][blocks[0].length];
+        rotated[2][0] = blocks[0][0];
+        rotated[1][0] = blocks[0][1];
+        rotated[0][0] = blocks[0][2];
+
+        rotated[2][1] = blocks[1][0];
+        rotated[1][1] = blocks[1][1];
+        rotated[0][1] = blocks[1][2];
 
-        newPiece.rotate(rotation);
-        return newPiece;
+        rotated[2][2] = blocks[2][0];
+        rotated[1][2] = blocks[2][1];
+        rotated[0][2] = blocks[2][2];
+
+        return rotated;
     }
 
     /**
-     * Create a new GamePiece with the given name, block makeup and value. Should not be called directly, only via the
-     * factory.
+     * Create a new GamePiece with the given name, block makeup, value and rotation. Only called while building the
+     * shared pieces, use the factory to get a piece.
      * @param name name of the piece
      * @param blocks block makeup of the piece
      * @param value the value of this piece
+     * @param rotation rotation of the piece
      */
-    public GamePiece(String name, int[][] blocks, int value) {
+    private GamePiece(String name, int[][] blocks, int value, int rotation) {
         this.name = name;
         this.blocks = blocks;
         this.value = value;
-
-        //Use the shape of the block to create a grid with either 0 (empty) or the value of this shape for each block.
-        for(int x = 0; x < blocks.length; x++) {
-            for (int y = 0; y < blocks[x].length; y++) {
-                if(blocks[x][y] == 0) continue;
-                blocks[x][y] = value;
-            }
-        }
+        this.rotation = rotation;
     }
 
     /**
@@ -173,41 +246,58 @@ public class GamePiece {
     }
 
     /**
-     * Get the block makeup of this piece
-     * @return 2D grid of the blocks representing the piece shape
+     * Get the piece number of this piece, as used by the factory
+     * @return piece number
      */
-    public int[][] getBlocks() {
-        return blocks;
+    public int getIndex() {
+        return value - 1;
     }
 
     /**
-     * Rotate this piece the given number of rotations
-     * @param rotations number of rotations
+     * Get the rotation of this piece
+     * @return number of quarter turns from the piece's starting orientation, between 0 and 3
      */
-    public void rotate(int rotations) {
-        for(int rotated = 0; rotated < rotations; rotated ++) {
-            rotate();
-        }
+    public int getRotation() {
+        return rotation;
     }
 
     /**
-     * Rotate this piece exactly once by rotating it's 3x3 grid
+     * Get the block makeup of this piece. The piece is shared, so this is a copy.
+     * @return 2D grid of the blocks representing the piece shape
      */
-    public void rotate() {
-        int[][] rotated = new int[blocks.length][blocks[0].length];
-        rotated[2][0] = blocks[0][0];
-        rotated[1][0] = blocks[0][1];
-        rotated[0][0] = blocks[0][2];
+    public int[][] getBlocks() {
+        int[][] copy = new int[blocks.length][];
+        for (int x = 0; x < blocks.length; x++) {
+            copy[x] = blocks[x].clone();
+        }
+        return copy;
+    }
 
-        rotated[2][1] = blocks[1][0];
-        rotated[1][1] = blocks[1][1];
-        rotated[0][1] = blocks[1][2];
+    /**
+     * Get the value of a single block of this piece without copying the shape
+     * @param x column in the 3x3 grid
+     * @param y row in the 3x3 grid
+     * @return the block value, 0 if empty
+     */
+    public int getBlock(int x, int y) {
+        return blocks[x][y];
+    }
 
-        rotated[2][2] = blocks[2][0];
-        rotated[1][2] = blocks[2][1];
-        rotated[0][2] = blocks[2][2];
+    /**
+     * Get this piece rotated the given number of clockwise quarter turns
+     * @param rotations number of rotations, negative to rotate anticlockwise
+     * @return the rotated piece
+     */
+    public GamePiece rotate(int rotations) {
+        return orientations[value - 1][Math.floorMod(rotation + rotations, ROTATIONS)];
+    }
 
-        blocks = rotated;
+    /**
+     * Get this piece rotated exactly once clockwise
+     * @return the rotated piece
+     */
+    public GamePiece rotate() {
+        return rotate(1);
     }
 
 
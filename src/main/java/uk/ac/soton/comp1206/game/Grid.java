@@ -1,18 +1,21 @@
 package uk.ac.soton.comp1206.game;
 
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.GridChangedListener;
 
-import java.util.IllegalFormatCodePointException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
 
 /**
  * The Grid is a model which holds the state of a game board. It is made up of a set of Integer values arranged in a 2D
  * arrow, with rows and columns.
  *
- * Each value inside the Grid is an IntegerProperty can be bound to enable modification and display of the contents of
- * the grid.
+ * Occupancy is held in a single long bitboard, one bit per cell (bit y * cols + x), alongside a compact byte array
+ * holding the colour value of each cell. Because of this a grid can hold at most 64 cells.
+ *
+ * Changes to the grid are published to any attached GridChangedListeners, which is how the display follows the model.
  *
  * The Grid contains functions related to modifying the model, for example, placing a piece inside the grid.
  *
@@ -20,6 +23,26 @@ import java.util.IllegalFormatCodePointException;
  */
 public class Grid {
 
+    /**
+     * The largest number of cells a grid can hold, one per bit of the occupancy bitboard
+     */
+    public static final int MAX_CELLS = Long.SIZE;
+
+    /**
+     * Zobrist keys for every cell and value, from a fixed seed so hashes are the same on every run
+     */
+    private static final long[][] ZOBRIST = new long[MAX_CELLS][GamePiece.PIECES + 1];
+
+    static {
+        var random = new SplittableRandom(0x7E7EC5L);
+        for (long[] cell : ZOBRIST) {
+            //An empty cell does not change the hash
+            for (int value = 1; value < cell.length; value++) {
+                cell[value] = random.nextLong();
+            }
+        }
+    }
+
     /**
      * The number of columns in this grid
      */
@@ -36,9 +59,59 @@ public class Grid {
     private final int rows;
 
     /**
-     * The grid is a 2D arrow with rows and columns of SimpleIntegerProperties.
+     * Bitboard of the occupied cells, bit y * cols + x is set when the cell at x,y holds a block
+     */
+    private long occupancy = 0;
+
+    /**
+     * The colour value of every cell, indexed the same way as the occupancy bitboard
+     */
+    private final byte[] colours;
+
+    /**
+     * Number of blocks in each row
+     */
+    private final byte[] rowFill;
+
+    /**
+     * Number of blocks in each column
+     */
+    private final byte[] colFill;
+
+    /**
+     * Mask of the cells in each row
+     */
+    private final long[] rowMasks;
+
+    /**
+     * Mask of the cells in each column
+     */
+    private final long[] colMasks;
+
+    /**
+     * Mask of the cells covered by the last piece played
+     */
+    private long lastPlacement = 0;
+
+    /**
+     * Precomputed placement masks for a grid of this size
+     */
+    private final PlacementMasks masks;
+
+    /**
+     * Symmetries of a grid of this size
+     */
+    private final BoardSymmetry symmetry;
+
+    /**
+     * Zobrist hash of the colour of every cell, kept up to date as cells change
+     */
+    private long hash = 0;
+
+    /**
+     * Listeners which are told whenever a cell changes value
      */
-    private final SimpleIntegerProperty[][] grid;
+    private final List<GridChangedListener> listeners = new ArrayList<>();
 
     /**
      * Create a new Grid with the specified number of columns and rows and initialise them
@@ -46,28 +119,44 @@ public class Grid {
      * @param rows number of rows
      */
     public Grid(int cols, int rows) {
+        if (cols <= 0 || rows <= 0 || cols * rows > MAX_CELLS) {
+            throw new IllegalArgumentException("Grid must have between 1 and " + MAX_CELLS + " cells: " + cols + "x" + rows);
+        }
         this.cols = cols;
         this.rows = rows;
 
-        //Create the grid itself
-        grid = new SimpleIntegerProperty[cols][rows];
+        //Create the colour plane, every cell starts empty
+        colours = new byte[cols * rows];
+        masks = PlacementMasks.forGrid(cols, rows);
+        symmetry = BoardSymmetry.forGrid(cols, rows);
 
-        //Add a SimpleIntegerProperty to every block in the grid
-        for(var y = 0; y < rows; y++) {
-            for(var x = 0; x < cols; x++) {
-                grid[x][y] = new SimpleIntegerProperty(0);
+        //Fill counters and masks for every line, used to find full lines without rescanning the grid
+        rowFill = new byte[rows];
+        colFill = new byte[cols];
+        rowMasks = new long[rows];
+        colMasks = new long[cols];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                rowMasks[y] |= 1L << (y * cols + x);
+                colMasks[x] |= 1L << (y * cols + x);
             }
         }
     }
 
     /**
-     * Get the Integer property contained inside the grid at a given row and column index. Can be used for binding.
-     * @param x column
-     * @param y row
-     * @return the IntegerProperty at the given x and y in this grid
+     * Add a listener which will be told about every change to a cell in this grid
+     * @param listener listener to add
+     */
+    public void addGridChangedListener(GridChangedListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener previously added to this grid
+     * @param listener listener to remove
      */
-    public IntegerProperty getGridProperty(int x, int y) {
-        return grid[x][y];
+    public void removeGridChangedListener(GridChangedListener listener) {
+        listeners.remove(listener);
     }
 
     /**
@@ -75,25 +164,82 @@ public class Grid {
      * @param x column
      * @param y row
      * @param value the new value
+     * @throws IndexOutOfBoundsException if there is no such cell
+     * @throws IllegalArgumentException if the value is not empty or a piece's value
      */
     public void set(int x, int y, int value) {
-        grid[x][y].set(value);
+        //Checked before anything changes, so a bad call cannot leave the bitboard, hash and counters out of step
+        if (x < 0 || x >= cols || y < 0 || y >= rows) {
+            throw new IndexOutOfBoundsException("No such cell: " + x + "," + y);
+        }
+        if (value < 0 || value > GamePiece.PIECES) {
+            throw new IllegalArgumentException("No such block value: " + value);
+        }
+        int index = y * cols + x;
+        int old = colours[index];
+        if (old == value) return;
+
+        colours[index] = (byte) value;
+        hash ^= ZOBRIST[index][old] ^ ZOBRIST[index][value];
+        if (value == 0) {
+            occupancy &= ~(1L << index);
+            rowFill[y]--;
+            colFill[x]--;
+        } else if (old == 0) {
+            occupancy |= 1L << index;
+            rowFill[y]++;
+            colFill[x]++;
+        }
+
+        for (GridChangedListener listener : listeners) {
+            listener.gridChanged(x, y, value);
+        }
     }
 
     /**
      * Get the value represented at the given x and y index within the grid
      * @param x column
      * @param y row
-     * @return the value
+     * @return the value, or -1 if there is no such cell
      */
     public int get(int x, int y) {
-        try {
-            //Get the value held in the property at the x and y index provided
-            return grid[x][y].get();
-        } catch (ArrayIndexOutOfBoundsException e) {
-            //No such index
-            return -1;
-        }
+        //No such index
+        if (x < 0 || x >= cols || y < 0 || y >= rows) return -1;
+        return colours[y * cols + x];
+    }
+
+    /**
+     * Get the occupancy bitboard of this grid, bit y * cols + x is set when the cell at x,y holds a block
+     * @return occupancy bitboard
+     */
+    public long getOccupancy() {
+        return occupancy;
+    }
+
+    /**
+     * Get the Zobrist hash of this grid, which covers the colour of every cell and is updated as cells change. Grids
+     * with the same blocks in the same colours always have the same hash, on every run.
+     * @return 64 bit hash
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Get a key for the position on this grid which is the same for every position symmetric to it. It is the canonical
+     * occupancy, so only which cells are filled counts, not their colours, as that is all that affects play.
+     * @return canonical occupancy bitboard
+     */
+    public long getCanonicalKey() {
+        return symmetry.canonical(occupancy);
+    }
+
+    /**
+     * Get the symmetries of this grid, to transform pieces and placements to and from the canonical position
+     * @return symmetries for a grid of this size
+     */
+    public BoardSymmetry getSymmetry() {
+        return symmetry;
     }
 
     /**
@@ -119,32 +265,10 @@ public class Grid {
      * @param yCoord y-coordinate of where the piece will be played
      * @return true or false to see if you can play the piece
      */
-    public Boolean canPlayPiece(GamePiece gp, int xCoord, int yCoord) {
-        logger.info("Checks if you can play a certain piece, returns true or false");
-        //Removes offset, usually the 3x3 piece doesn't place in the middle, removing 1 allows piece to be put in the middle
-        var topX = xCoord - 1;
-        var topY = yCoord - 1;
-
-        //Gets the 3x3 grid
-        int[][] grid = gp.getBlocks();
-        //Runs through the 3x3 grid
-        for (int x = 0; x < grid.length; x++) {
-            for (int y = 0; y < grid.length; y++) {
-                //Checks value at point x,y in the 3x3 grid (see if it's a 1 or 0)
-                var blockValue = grid[x][y];
-                //If blockValue is 1, it means there is a block in that x,y position
-                if (blockValue > 0) {
-                    //Finds where the blocks will be on the 5x5 grid and checks if there is already a block there
-                    var gridValue = get(topX + x, topY + y);
-                    //If there is already a block at the location in the 5x5, return false as blockValue is also 1
-                    if (gridValue != 0) {
-                        logger.info("Unable to place piece, conflict");
-                        return false;
-                    }
-                }
-            }
-        }
-        return true;
+    public boolean canPlayPiece(GamePiece gp, int xCoord, int yCoord) {
+        logger.trace("Checks if you can play a certain piece, returns true or false");
+        //The piece must land fully on the grid without overlapping a block that is already there
+        return masks.canPlay(occupancy, gp.getIndex(), gp.getRotation(), xCoord, yCoord);
     }
 
     /**
@@ -154,39 +278,105 @@ public class Grid {
      * @param yCoord y coordinate of where block will be placed
      */
     public void playPiece(GamePiece gp, int xCoord, int yCoord) {
-        logger.info("Checking if we can play the piece at x and y");
-        //Removes offset, usually the 3x3 piece doesn't place in the middle, removing 1 allows piece to be put in the middle
-        var topX = xCoord - 1;
-        var topY = yCoord - 1;
-        //Gets the value (which piece) it is
-        int value = gp.getValue();
-        //Gets the 3x3 grid of the piece
-        int[][] blocks = gp.getBlocks();
+        logger.trace("Checking if we can play the piece at x and y");
         //Checks if you can play the piece
         if (!canPlayPiece(gp, xCoord, yCoord)) return;
-        //Run through the 3x3 grid
-        for (int x = 0; x < blocks.length; x++) {
-            for (int y = 0; y < blocks.length; y++) {
-                //Checks value wherever we are in the nested for loop
-                var blockValue = blocks[x][y];
-                //Checks if there is a block at the x and y coordinate of the 3x3
-                if (blockValue > 0) {
-                    //Put the block on the grid
-                    set(x + topX, y + topY, value);
+        //Gets the cells the piece covers and the value (which piece) it is
+        long mask = masks.getMask(gp, xCoord, yCoord);
+        byte value = (byte) gp.getValue();
+
+        //Put the blocks on the grid
+        occupancy |= mask;
+        lastPlacement = mask;
+        long remaining = mask;
+        while (remaining != 0) {
+            int index = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            colours[index] = value;
+            hash ^= ZOBRIST[index][value];
+            rowFill[index / cols]++;
+            colFill[index % cols]++;
+            for (GridChangedListener listener : listeners) {
+                listener.gridChanged(index % cols, index / cols, value);
+            }
+        }
+    }
+
+    /**
+     * Get the cells covered by the last piece played on this grid
+     * @return mask of the cells of the last placement
+     */
+    public long getLastPlacement() {
+        return lastPlacement;
+    }
+
+    /**
+     * Clear every full row and column which passes through the given cells. Only the lines touched are checked, using
+     * the per line fill counters.
+     * @param touched mask of the cells which have changed, usually the last placement
+     * @param cleared set which is filled with the cells that were cleared
+     * @return the number of lines cleared
+     */
+    public int clearFullLines(long touched, CellSet cleared) {
+        int lines = 0;
+        long clearMask = 0;
+        //Bitmasks of the rows and columns already checked, so a line touched by several cells is only counted once
+        long rowsSeen = 0;
+        long colsSeen = 0;
+
+        long remaining = touched;
+        while (remaining != 0) {
+            int index = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            int x = index % cols;
+            int y = index / cols;
+            if ((rowsSeen & (1L << y)) == 0) {
+                rowsSeen |= 1L << y;
+                if (rowFill[y] == cols) {
+                    lines++;
+                    clearMask |= rowMasks[y];
+                }
+            }
+            if ((colsSeen & (1L << x)) == 0) {
+                colsSeen |= 1L << x;
+                if (colFill[x] == rows) {
+                    lines++;
+                    clearMask |= colMasks[x];
                 }
             }
         }
+
+        cleared.set(clearMask);
+
+        //Reset the blocks in the cleared lines
+        remaining = clearMask;
+        while (remaining != 0) {
+            int index = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            set(index % cols, index / cols, 0);
+        }
+        return lines;
+    }
+
+    /**
+     * Get the placement masks used by this grid
+     * @return placement masks for a grid of this size
+     */
+    public PlacementMasks getPlacementMasks() {
+        return masks;
     }
 
     /**
      * All lines are cleared
      */
     public void clear() {
-        logger.info("Lines cleared are all set back to 0");
-        for (int x = 0; x < rows; x++) {
-            for (int y = 0; y < cols; y++) {
-                grid[x][y].set(0);
-            }
+        logger.debug("Lines cleared are all set back to 0");
+        //Only visit the cells which actually hold a block
+        long remaining = occupancy;
+        while (remaining != 0) {
+            int index = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            set(index % cols, index / cols, 0);
         }
     }
 
@@ -0,0 +1,147 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A Hint is the placement the HintEngine thinks is best for the current turn: whether to swap with the next piece, the
+ * rotation to play the piece in, and where to play it.
+ */
+public class Hint {
+
+    /**
+     * Whether the current piece should be swapped with the next piece first
+     */
+    private final boolean swap;
+
+    /**
+     * Piece number of the piece to play
+     */
+    private final int piece;
+
+    /**
+     * Rotation to play the piece in, counted from the piece's starting rotation
+     */
+    private final int rotation;
+
+    /**
+     * Column to play the piece at
+     */
+    private final int x;
+
+    /**
+     * Row to play the piece at
+     */
+    private final int y;
+
+    /**
+     * Cells the piece would cover
+     */
+    private final long mask;
+
+    /**
+     * Expected value of the placement
+     */
+    private final double value;
+
+    /**
+     * Number of pieces the search looked ahead
+     */
+    private final int depth;
+
+    /**
+     * Create a hint
+     * @param swap whether to swap with the next piece first
+     * @param piece piece number of the piece to play
+     * @param rotation rotation to play the piece in
+     * @param x column to play at
+     * @param y row to play at
+     * @param mask cells the piece would cover
+     * @param value expected value of the placement
+     * @param depth number of pieces looked ahead
+     */
+    public Hint(boolean swap, int piece, int rotation, int x, int y, long mask, double value, int depth) {
+        this.swap = swap;
+        this.piece = piece;
+        this.rotation = rotation;
+        this.x = x;
+        this.y = y;
+        this.mask = mask;
+        this.value = value;
+        this.depth = depth;
+    }
+
+    /**
+     * Check whether the current piece should be swapped with the next piece first
+     * @return true to swap
+     */
+    public boolean isSwap() {
+        return swap;
+    }
+
+    /**
+     * Get the piece number of the piece to play
+     * @return piece number
+     */
+    public int getPiece() {
+        return piece;
+    }
+
+    /**
+     * Get the rotation to play the piece in, counted from the piece's starting rotation
+     * @return rotation
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Get the column to play the piece at
+     * @return column
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Get the row to play the piece at
+     * @return row
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Get the cells the piece would cover, in the Grid's occupancy bitboard layout
+     * @return mask of cells
+     */
+    public long getMask() {
+        return mask;
+    }
+
+    /**
+     * Get the expected value of the placement
+     * @return expected value
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Get the number of pieces the search looked ahead
+     * @return search depth
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public String toString() {
+        return "Hint{" +
+                "swap=" + swap +
+                ", piece=" + piece +
+                ", rotation=" + rotation +
+                ", x=" + x +
+                ", y=" + y +
+                ", value=" + value +
+                ", depth=" + depth +
+                '}';
+    }
+}
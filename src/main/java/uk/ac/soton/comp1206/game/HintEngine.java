@@ -0,0 +1,525 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The HintEngine works out the best placement for the current turn, looking at every rotation of the current piece and
+ * of the next piece (by swapping), and at the pieces which might come after.
+ *
+ * It uses a depth limited expectimax search. At our turn we pick the placement with the highest value; after it the
+ * piece we did not play becomes the current piece and the new next piece is equally likely to be any of the pieces, as
+ * the game spawns them uniformly, so its value is the average over every piece. Positions at the end of the search are
+ * scored with Evaluation. Because swapping means either of the two known pieces can be played, a position only depends
+ * on the board and the pair of pieces, which is what the transposition table is keyed by. Keys are folded through the
+ * board symmetries, so positions which are rotations or reflections of each other share an entry.
+ *
+ * The search deepens one piece at a time until its time budget runs out and returns the deepest search it finished.
+ * It runs on its own thread, so it never holds up the FX thread, and can be cancelled at any time, for example when the
+ * game loop moves on to the next piece. Everything a search works with is held by the search itself rather than the
+ * engine, so searching takes no lock and starting or cancelling one never waits for another to finish.
+ */
+public class HintEngine {
+
+    private static final Logger logger = LogManager.getLogger(HintEngine.class);
+
+    /**
+     * Default time a search may take, comfortably inside the shortest timer delay of 2500ms
+     */
+    public static final long DEFAULT_BUDGET_MILLIS = 1000;
+
+    /**
+     * Default deepest search, in pieces placed
+     */
+    public static final int DEFAULT_MAX_DEPTH = 4;
+
+    /**
+     * Value of a position where neither piece fits, as the turn will time out and cost a life
+     */
+    private static final double NO_MOVE = -10 * Evaluation.LINE;
+
+    /**
+     * Number of nodes searched between checks of the clock and the cancel flag
+     */
+    private static final int CHECK_INTERVAL = 256;
+
+    /**
+     * Thrown to unwind a search which has run out of time or been cancelled. Shared, as it carries no information.
+     */
+    private static final RuntimeException ABORTED = new RuntimeException("Search aborted", null, false, false) { };
+
+    /**
+     * Runs searches away from the FX thread
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "Hint");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * Values of positions already searched, one table for each thread which searches, kept between its searches
+     */
+    private static final ThreadLocal<TranspositionTable> tables =
+            ThreadLocal.withInitial(() -> new TranspositionTable(16));
+
+    /**
+     * Time a search may take in milliseconds
+     */
+    private volatile long budgetMillis = DEFAULT_BUDGET_MILLIS;
+
+    /**
+     * Deepest search, in pieces placed
+     */
+    private volatile int maxDepth = DEFAULT_MAX_DEPTH;
+
+    /**
+     * Cancel flag of the latest search
+     */
+    private AtomicBoolean cancelFlag;
+
+    /**
+     * Result of the latest search
+     */
+    private CompletableFuture<Hint> pending;
+
+    /**
+     * Set how long a search may take
+     * @param budgetMillis time budget in milliseconds
+     */
+    public void setBudgetMillis(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+    }
+
+    /**
+     * Set the deepest search
+     * @param maxDepth number of pieces to look ahead, at least 1
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = Math.max(1, maxDepth);
+    }
+
+    /**
+     * Start looking for the best placement in the given game, cancelling any search already running. The board and
+     * pieces are copied before this returns, so the game may carry on while the search runs.
+     * @param engine game to find a hint for
+     * @return completes with the hint, or null if neither piece fits anywhere or the engine has been shut down;
+     * cancelled if another search is started
+     */
+    public synchronized CompletableFuture<Hint> findHint(GameEngine engine) {
+        cancel();
+        if (executor.isShutdown()) return CompletableFuture.completedFuture(null);
+
+        var gridMasks = engine.getGrid().getPlacementMasks();
+        long occupancy = engine.getGrid().getOccupancy();
+        int current = engine.getCurrentPiece().getIndex();
+        int next = engine.getNextPiece().getIndex();
+
+        var flag = new AtomicBoolean(false);
+        var result = new CompletableFuture<Hint>();
+        cancelFlag = flag;
+        pending = result;
+
+        executor.execute(() -> {
+            if (flag.get()) return;
+            try {
+                long budget = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+                result.complete(search(gridMasks, occupancy, current, next, System.nanoTime() + budget, flag));
+            } catch (RuntimeException e) {
+                logger.error("Hint search failed", e);
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Cancel the search in progress, if there is one
+     */
+    public synchronized void cancel() {
+        if (cancelFlag != null) {
+            cancelFlag.set(true);
+            pending.cancel(false);
+            cancelFlag = null;
+            pending = null;
+        }
+    }
+
+    /**
+     * Cancel any search and stop the search thread
+     */
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Search for the best placement on the calling thread. Takes no lock, so searches may run on several threads at
+     * once.
+     * @param masks placement masks for the grid size
+     * @param occupancy occupancy bitboard of the grid
+     * @param current piece number of the current piece
+     * @param next piece number of the next piece
+     * @param deadline time to stop searching deeper, from System.nanoTime
+     * @param cancelled set to stop the search
+     * @return the best placement from the deepest search finished, or null if neither piece fits or it was cancelled
+     */
+    public Hint search(PlacementMasks masks, long occupancy, int current, int next, long deadline,
+                       AtomicBoolean cancelled) {
+        return new Search(masks, deadline, cancelled).run(occupancy, current, next, maxDepth);
+    }
+
+    /**
+     * One search: what it searches with, and how far it has got. Only used by the thread running it.
+     */
+    private static final class Search {
+
+        /**
+         * Placement masks for the grid size
+         */
+        private final PlacementMasks masks;
+
+        /**
+         * Symmetries of the board
+         */
+        private final BoardSymmetry symmetry;
+
+        /**
+         * Values of positions already searched
+         */
+        private final TranspositionTable table = tables.get();
+
+        /**
+         * When the search has to stop, from System.nanoTime
+         */
+        private final long deadline;
+
+        /**
+         * Set to stop the search
+         */
+        private final AtomicBoolean cancelled;
+
+        /**
+         * Whether the search may be stopped early
+         */
+        private boolean abortable;
+
+        /**
+         * Nodes searched
+         */
+        private long nodes;
+
+        /**
+         * Board part of the last key worked out by key
+         */
+        private long keyBoard;
+
+        /**
+         * Tag part of the last key worked out by key
+         */
+        private int keyTag;
+
+        /**
+         * Set up a search
+         * @param masks placement masks for the grid size
+         * @param deadline time to stop searching deeper, from System.nanoTime
+         * @param cancelled set to stop the search
+         */
+        Search(PlacementMasks masks, long deadline, AtomicBoolean cancelled) {
+            this.masks = masks;
+            this.symmetry = BoardSymmetry.forGrid(masks.getCols(), masks.getRows());
+            this.deadline = deadline;
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * Deepen the search one piece at a time until the deadline or the deepest search
+         * @param occupancy occupancy bitboard of the grid
+         * @param current piece number of the current piece
+         * @param next piece number of the next piece
+         * @param maxDepth deepest search, in pieces placed
+         * @return the best placement from the deepest search finished, or null if neither piece fits or it was
+         * cancelled
+         */
+        Hint run(long occupancy, int current, int next, int maxDepth) {
+            long start = System.nanoTime();
+            Hint best = null;
+            for (int depth = 1; depth <= maxDepth; depth++) {
+                //The shallowest search always finishes unless cancelled, so there is always a hint to give
+                abortable = best != null;
+                try {
+                    best = searchRoot(occupancy, current, next, depth);
+                } catch (RuntimeException e) {
+                    if (e != ABORTED) throw e;
+                    break;
+                }
+                if (best == null || System.nanoTime() > deadline) break;
+            }
+            logger.debug("Hint {} after {} nodes in {} ms", best, nodes, (System.nanoTime() - start) / 1000000);
+            return best;
+        }
+
+        /**
+         * Find the best placement of either piece
+         * @param occupancy occupancy bitboard
+         * @param current piece number of the current piece
+         * @param next piece number of the next piece
+         * @param depth number of pieces to place
+         * @return best placement, or null if neither piece fits
+         */
+        private Hint searchRoot(long occupancy, int current, int next, int depth) {
+            int cols = masks.getCols();
+            int cells = cols * masks.getRows();
+            Hint best = null;
+            for (int swap = 0; swap < 2; swap++) {
+                if (swap == 1 && next == current) break;
+                int piece = swap == 0 ? current : next;
+                int other = swap == 0 ? next : current;
+                for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                    for (int cell = 0; cell < cells; cell++) {
+                        int x = cell % cols;
+                        int y = cell / cols;
+                        if (!isNewPlacement(occupancy, piece, rotation, x, y)) continue;
+                        long mask = masks.getMask(piece, rotation, x, y);
+                        double value = placementValue(occupancy | mask, other, depth);
+                        if (best == null || value > best.getValue()) {
+                            best = new Hint(swap == 1, piece, rotation, x, y, mask, value, depth);
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Check that a placement is legal and that no earlier rotation of the piece at the same anchor covers the same
+         * cells, so symmetric pieces are only searched once
+         * @param occupancy occupancy bitboard
+         * @param piece piece number
+         * @param rotation rotation
+         * @param x anchor column
+         * @param y anchor row
+         * @return true if the placement should be searched
+         */
+        private boolean isNewPlacement(long occupancy, int piece, int rotation, int x, int y) {
+            if (!masks.canPlay(occupancy, piece, rotation, x, y)) return false;
+            long mask = masks.getMask(piece, rotation, x, y);
+            for (int earlier = 0; earlier < rotation; earlier++) {
+                if (masks.isInBounds(piece, earlier, x, y) && masks.getMask(piece, earlier, x, y) == mask) return false;
+            }
+            return true;
+        }
+
+        /**
+         * Value of the board just after a piece is placed
+         * @param placed occupancy bitboard with the piece placed, before lines are cleared
+         * @param held piece number of the piece which was not played
+         * @param depth number of pieces being placed including this one
+         * @return expected value
+         */
+        private double placementValue(long placed, int held, int depth) {
+            if (depth == 1) return Evaluation.score(masks, placed);
+            long full = masks.fullLines(placed);
+            int lines = full == 0 ? 0 : masks.countFullLines(placed);
+            return lines * Evaluation.LINE + chanceValue(placed & ~full, held, depth - 1);
+        }
+
+        /**
+         * Expected value before the next piece is dealt, averaged over every piece it could be
+         * @param occupancy occupancy bitboard
+         * @param held piece number of the piece carried over as the current piece
+         * @param depth number of pieces left to place
+         * @return expected value
+         */
+        private double chanceValue(long occupancy, int held, int depth) {
+            key(1, occupancy, held, -1, depth);
+            long board = keyBoard;
+            int tag = keyTag;
+            int slot = table.find(board, tag);
+            if (slot >= 0) return table.value(slot);
+
+            double total = 0;
+            for (int piece = 0; piece < GamePiece.PIECES; piece++) {
+                total += maxValue(occupancy, held, piece, depth);
+            }
+            double value = total / GamePiece.PIECES;
+            table.store(board, tag, value);
+            return value;
+        }
+
+        /**
+         * Value of our turn with two known pieces, the best placement of either of them
+         * @param occupancy occupancy bitboard
+         * @param a piece number of one piece
+         * @param b piece number of the other piece
+         * @param depth number of pieces left to place
+         * @return value of the best placement
+         */
+        private double maxValue(long occupancy, int a, int b, int depth) {
+            checkAbort();
+            key(0, occupancy, a, b, depth);
+            long board = keyBoard;
+            int tag = keyTag;
+            int slot = table.find(board, tag);
+            if (slot >= 0) return table.value(slot);
+
+            int cols = masks.getCols();
+            int cells = cols * masks.getRows();
+            double best = NO_MOVE;
+            for (int swap = 0; swap < 2; swap++) {
+                if (swap == 1 && a == b) break;
+                int piece = swap == 0 ? a : b;
+                int other = swap == 0 ? b : a;
+                for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                    for (int cell = 0; cell < cells; cell++) {
+                        int x = cell % cols;
+                        int y = cell / cols;
+                        if (!isNewPlacement(occupancy, piece, rotation, x, y)) continue;
+                        long placed = occupancy | masks.getMask(piece, rotation, x, y);
+                        best = Math.max(best, placementValue(placed, other, depth));
+                    }
+                }
+            }
+            table.store(board, tag, best);
+            return best;
+        }
+
+        /**
+         * Stop the search if it has been cancelled, or run out of time and is allowed to stop early
+         */
+        private void checkAbort() {
+            if (++nodes % CHECK_INTERVAL != 0) return;
+            if (cancelled.get() || (abortable && System.nanoTime() > deadline)) throw ABORTED;
+        }
+
+        /**
+         * Work out the transposition table key of a position, the smallest of its forms under every board symmetry,
+         * into keyBoard and keyTag
+         * @param kind 0 for our turn, 1 for the next piece being dealt
+         * @param occupancy occupancy bitboard
+         * @param a piece number of one piece
+         * @param b piece number of the other piece, or -1 if there is only one
+         * @param depth pieces left to place
+         */
+        private void key(int kind, long occupancy, int a, int b, int depth) {
+            keyBoard = occupancy;
+            keyTag = tag(kind, a, b, depth);
+            for (int s = 1; s < BoardSymmetry.COUNT; s++) {
+                if (!symmetry.isValid(s)) continue;
+                long board = symmetry.transform(s, occupancy);
+                int order = Long.compareUnsigned(board, keyBoard);
+                if (order > 0) continue;
+                int tag = tag(kind, symmetry.transformPiece(s, a), b < 0 ? b : symmetry.transformPiece(s, b),
+                        depth);
+                if (order < 0 || tag < keyTag) {
+                    keyBoard = board;
+                    keyTag = tag;
+                }
+            }
+        }
+    }
+
+    /**
+     * Pack the kind of node, the pieces and the depth into the part of a table key which is not the board
+     * @param kind 0 for our turn, 1 for the next piece being dealt
+     * @param a piece number of one piece
+     * @param b piece number of the other piece, or -1 if there is only one
+     * @param depth pieces left to place
+     * @return tag, never 0
+     */
+    private static int tag(int kind, int a, int b, int depth) {
+        //Either piece can be played by swapping, so the order of the pair does not matter
+        int low = b < 0 ? a : Math.min(a, b);
+        int high = b < 0 ? 0 : Math.max(a, b) + 1;
+        return ((kind << 16) | (low << 12) | (high << 7) | depth) + 1;
+    }
+
+    /**
+     * A fixed size table of position values, where a new entry always replaces whatever was in its slot
+     */
+    private static class TranspositionTable {
+
+        /**
+         * Board of each entry
+         */
+        private final long[] boards;
+
+        /**
+         * Tag of each entry, 0 when the slot is empty
+         */
+        private final int[] tags;
+
+        /**
+         * Value of each entry
+         */
+        private final double[] values;
+
+        /**
+         * Mask to turn a hash into a slot
+         */
+        private final int mask;
+
+        /**
+         * Create an empty table
+         * @param bits the table holds 2 to the power of bits entries
+         */
+        TranspositionTable(int bits) {
+            int size = 1 << bits;
+            boards = new long[size];
+            tags = new int[size];
+            values = new double[size];
+            mask = size - 1;
+        }
+
+        /**
+         * Work out which slot a position goes in
+         * @param board occupancy bitboard
+         * @param tag pieces, depth and kind of node
+         * @return slot
+         */
+        private int slot(long board, int tag) {
+            long hash = (board ^ (tag * 0x9E3779B97F4A7C15L)) * 0xBF58476D1CE4E5B9L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+        /**
+         * Look a position up
+         * @param board occupancy bitboard
+         * @param tag pieces, depth and kind of node
+         * @return slot holding the position, or -1 if it is not in the table
+         */
+        int find(long board, int tag) {
+            int slot = slot(board, tag);
+            return tags[slot] == tag && boards[slot] == board ? slot : -1;
+        }
+
+        /**
+         * Get the value in a slot found with find
+         * @param slot slot
+         * @return value
+         */
+        double value(int slot) {
+            return values[slot];
+        }
+
+        /**
+         * Store the value of a position
+         * @param board occupancy bitboard
+         * @param tag pieces, depth and kind of node
+         * @param value value
+         */
+        void store(long board, int tag, double value) {
+            int slot = slot(board, tag);
+            boards[slot] = board;
+            tags[slot] = tag;
+            values[slot] = value;
+        }
+    }
+}
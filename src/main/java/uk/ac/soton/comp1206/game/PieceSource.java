@@ -0,0 +1,21 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A Piece Source deals the pieces for a game. Local games, simulations and replays draw from a seeded
+ * RandomPieceSource, multiplayer games from the pieces the server sends.
+ */
+public interface PieceSource {
+
+    /**
+     * Take the next piece
+     * @return the next piece, or null if none is available yet
+     */
+    GamePiece next();
+
+    /**
+     * Look at a piece further ahead without taking it
+     * @param ahead how far ahead to look, 0 is the piece next will return
+     * @return the piece, or null if it is not known yet
+     */
+    GamePiece peek(int ahead);
+}
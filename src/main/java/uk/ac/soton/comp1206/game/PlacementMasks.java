@@ -0,0 +1,269 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PlacementMasks is a table of precomputed placement masks for a grid of a given size.
+ *
+ * For every piece, every rotation and every anchor cell on the grid it holds a mask of the grid cells the piece would
+ * cover (in the same bit layout as the Grid's occupancy bitboard) and whether every block of the piece lands on the
+ * grid. Checking whether a piece can be played is then a single AND against the occupancy, and playing it a single OR.
+ *
+ * Tables are shared between every grid of the same size. The tables for the 5x5 game board and the 3x3 piece boards
+ * are built when this class is loaded, any other size is built the first time it is asked for.
+ */
+public class PlacementMasks {
+
+    private static final Logger logger = LogManager.getLogger(PlacementMasks.class);
+
+    /**
+     * Tables which have already been built, keyed by the grid size
+     */
+    private static final Map<Integer, PlacementMasks> tables = new ConcurrentHashMap<>();
+
+    static {
+        //Build the tables for the boards used in every game up front
+        forGrid(5, 5);
+        forGrid(3, 3);
+    }
+
+    /**
+     * Number of columns in the grid this table is for
+     */
+    private final int cols;
+
+    /**
+     * Number of rows in the grid this table is for
+     */
+    private final int rows;
+
+    /**
+     * The cells covered by each piece, rotation and anchor, clipped to the grid
+     */
+    private final long[] masks;
+
+    /**
+     * Whether every block of each piece, rotation and anchor lands on the grid
+     */
+    private final boolean[] inBounds;
+
+    /**
+     * Get the table for a grid with the given number of columns and rows, building it if needed
+     * @param cols number of columns
+     * @param rows number of rows
+     * @return the placement masks for that grid size
+     */
+    public static PlacementMasks forGrid(int cols, int rows) {
+        return tables.computeIfAbsent(cols * Grid.MAX_CELLS + rows, key -> new PlacementMasks(cols, rows));
+    }
+
+    /**
+     * Mask of the cells in each row
+     */
+    private final long[] rowMasks;
+
+    /**
+     * Mask of the cells in each column
+     */
+    private final long[] colMasks;
+
+    /**
+     * Mask of every cell on the grid
+     */
+    private final long boardMask;
+
+    /**
+     * Build the table for a grid with the given number of columns and rows
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    private PlacementMasks(int cols, int rows) {
+        logger.info("Building placement masks for {} x {}", cols, rows);
+        this.cols = cols;
+        this.rows = rows;
+
+        rowMasks = new long[rows];
+        colMasks = new long[cols];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                rowMasks[y] |= 1L << (y * cols + x);
+                colMasks[x] |= 1L << (y * cols + x);
+            }
+        }
+        boardMask = cols * rows == Grid.MAX_CELLS ? -1L : (1L << (cols * rows)) - 1;
+
+        int size = GamePiece.PIECES * GamePiece.ROTATIONS * cols * rows;
+        masks = new long[size];
+        inBounds = new boolean[size];
+
+        for (int piece = 0; piece < GamePiece.PIECES; piece++) {
+            for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                var gp = GamePiece.createPiece(piece, rotation);
+                for (int anchorY = 0; anchorY < rows; anchorY++) {
+                    for (int anchorX = 0; anchorX < cols; anchorX++) {
+                        int index = index(piece, rotation, anchorX, anchorY);
+                        long mask = 0;
+                        boolean fits = true;
+                        //Pieces are centred on their anchor, so the 3x3 starts one up and one left of it
+                        for (int x = 0; x < 3; x++) {
+                            for (int y = 0; y < 3; y++) {
+                                if (gp.getBlock(x, y) == 0) continue;
+                                int gridX = anchorX - 1 + x;
+                                int gridY = anchorY - 1 + y;
+                                if (gridX < 0 || gridX >= cols || gridY < 0 || gridY >= rows) {
+                                    fits = false;
+                                } else {
+                                    mask |= 1L << (gridY * cols + gridX);
+                                }
+                            }
+                        }
+                        masks[index] = mask;
+                        inBounds[index] = fits;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Work out where a piece, rotation and anchor lives in the table
+     * @param piece piece number
+     * @param rotation rotation of the piece
+     * @param x anchor column
+     * @param y anchor row
+     * @return index into the table
+     */
+    private int index(int piece, int rotation, int x, int y) {
+        return ((piece * GamePiece.ROTATIONS + rotation) * rows + y) * cols + x;
+    }
+
+    /**
+     * Get the cells a piece would cover if played at the given anchor, clipped to the grid
+     * @param piece piece number
+     * @param rotation rotation of the piece
+     * @param x anchor column
+     * @param y anchor row
+     * @return mask of covered cells, or 0 if the anchor is not on the grid
+     */
+    public long getMask(int piece, int rotation, int x, int y) {
+        if (x < 0 || x >= cols || y < 0 || y >= rows) return 0;
+        return masks[index(piece, rotation, x, y)];
+    }
+
+    /**
+     * Get the cells a piece would cover if played at the given anchor, clipped to the grid
+     * @param gp the piece
+     * @param x anchor column
+     * @param y anchor row
+     * @return mask of covered cells, or 0 if the anchor is not on the grid
+     */
+    public long getMask(GamePiece gp, int x, int y) {
+        return getMask(gp.getIndex(), gp.getRotation(), x, y);
+    }
+
+    /**
+     * Check whether every block of a piece lands on the grid when played at the given anchor
+     * @param piece piece number
+     * @param rotation rotation of the piece
+     * @param x anchor column
+     * @param y anchor row
+     * @return true if the whole piece is on the grid
+     */
+    public boolean isInBounds(int piece, int rotation, int x, int y) {
+        if (x < 0 || x >= cols || y < 0 || y >= rows) return false;
+        return inBounds[index(piece, rotation, x, y)];
+    }
+
+    /**
+     * Check whether a piece can be played at the given anchor on a grid with the given occupancy
+     * @param occupancy occupancy bitboard of the grid
+     * @param piece piece number
+     * @param rotation rotation of the piece
+     * @param x anchor column
+     * @param y anchor row
+     * @return true if the piece is on the grid and does not overlap any block
+     */
+    public boolean canPlay(long occupancy, int piece, int rotation, int x, int y) {
+        if (x < 0 || x >= cols || y < 0 || y >= rows) return false;
+        int index = index(piece, rotation, x, y);
+        return inBounds[index] && (masks[index] & occupancy) == 0;
+    }
+
+    /**
+     * Get the mask of the cells in a row
+     * @param y row
+     * @return mask of the row
+     */
+    public long getRowMask(int y) {
+        return rowMasks[y];
+    }
+
+    /**
+     * Get the mask of the cells in a column
+     * @param x column
+     * @return mask of the column
+     */
+    public long getColumnMask(int x) {
+        return colMasks[x];
+    }
+
+    /**
+     * Get the mask of every cell on the grid
+     * @return mask of the whole grid
+     */
+    public long getBoardMask() {
+        return boardMask;
+    }
+
+    /**
+     * Find every cell which is part of a full row or column on a grid with the given occupancy
+     * @param occupancy occupancy bitboard
+     * @return mask of the cells in full lines
+     */
+    public long fullLines(long occupancy) {
+        long full = 0;
+        for (long row : rowMasks) {
+            if ((occupancy & row) == row) full |= row;
+        }
+        for (long col : colMasks) {
+            if ((occupancy & col) == col) full |= col;
+        }
+        return full;
+    }
+
+    /**
+     * Count the full rows and columns on a grid with the given occupancy
+     * @param occupancy occupancy bitboard
+     * @return number of full lines
+     */
+    public int countFullLines(long occupancy) {
+        int lines = 0;
+        for (long row : rowMasks) {
+            if ((occupancy & row) == row) lines++;
+        }
+        for (long col : colMasks) {
+            if ((occupancy & col) == col) lines++;
+        }
+        return lines;
+    }
+
+    /**
+     * Get the number of columns in the grid this table is for
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows in the grid this table is for
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,90 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A Queue Piece Source deals pieces which are handed to it from elsewhere, such as the pieces a multiplayer server
+ * sends. Pieces may be added from any thread.
+ *
+ * Every time a piece is taken the source asks for another through a callback, so the queue stays topped up. If the
+ * queue has run dry, because the connection has dropped or the server has stopped sending, a piece is dealt from a
+ * local random source instead, so the game never gets a null piece and keeps going.
+ */
+public class QueuePieceSource implements PieceSource {
+
+    /**
+     * Pieces waiting to be dealt
+     */
+    private final ConcurrentLinkedQueue<GamePiece> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Called each time a piece is taken, to ask for another
+     */
+    private final Runnable onTaken;
+
+    /**
+     * Deals pieces when none are queued
+     */
+    private final PieceSource fallback = new RandomPieceSource();
+
+    /**
+     * Whether to keep asking for pieces, until stopped
+     */
+    private volatile boolean asking = true;
+
+    /**
+     * Create an empty source
+     * @param onTaken called each time a piece is taken, to ask for another
+     */
+    public QueuePieceSource(Runnable onTaken) {
+        this.onTaken = onTaken;
+    }
+
+    /**
+     * Stop asking for pieces, for when none will come. Pieces already queued are still dealt first.
+     */
+    public void stop() {
+        asking = false;
+    }
+
+    /**
+     * Add a piece to the end of the queue
+     * @param index piece number
+     */
+    public void offer(int index) {
+        queue.add(GamePiece.createPiece(index));
+    }
+
+    /**
+     * Take the piece at the front of the queue and ask for another
+     * @return the next piece, or a random one if none has arrived
+     */
+    @Override
+    public GamePiece next() {
+        var piece = queue.poll();
+        if (asking) onTaken.run();
+        return piece != null ? piece : fallback.next();
+    }
+
+    /**
+     * Look at a queued piece without taking it
+     * @param ahead how far ahead to look, 0 is the piece next will return
+     * @return the piece, or null if it has not arrived yet
+     */
+    @Override
+    public GamePiece peek(int ahead) {
+        int i = 0;
+        for (GamePiece piece : queue) {
+            if (i++ == ahead) return piece;
+        }
+        return null;
+    }
+
+    /**
+     * Get the number of pieces waiting
+     * @return queue size
+     */
+    public int size() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,124 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * A Random Piece Source deals pieces uniformly at random from a seeded SplittableRandom stream, so a game can be
+ * played again exactly by reusing its seed, and independent sources for parallel games can be split off one another.
+ *
+ * The upcoming pieces are drawn ahead of time into a small ring buffer, which is what lets callers peek at them.
+ * Drawing a piece allocates nothing, as pieces are shared instances.
+ */
+public class RandomPieceSource implements PieceSource {
+
+    /**
+     * Default number of pieces kept ready
+     */
+    public static final int DEFAULT_LOOKAHEAD = 8;
+
+    /**
+     * Seed the stream started from, or 0 if it was split from another stream
+     */
+    private final long seed;
+
+    /**
+     * Stream the pieces are drawn from
+     */
+    private final SplittableRandom random;
+
+    /**
+     * Piece numbers of the upcoming pieces
+     */
+    private final byte[] buffer;
+
+    /**
+     * Position of the next piece in the buffer
+     */
+    private int head = 0;
+
+    /**
+     * Create a source with a random seed
+     */
+    public RandomPieceSource() {
+        this(new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Create a source from a seed, the same seed always deals the same pieces
+     * @param seed seed
+     */
+    public RandomPieceSource(long seed) {
+        this(seed, new SplittableRandom(seed), DEFAULT_LOOKAHEAD);
+    }
+
+    /**
+     * Create a source which draws from an existing stream, which it takes ownership of
+     * @param random stream to draw from
+     */
+    public RandomPieceSource(SplittableRandom random) {
+        this(0, random, DEFAULT_LOOKAHEAD);
+    }
+
+    /**
+     * Create a source and fill its lookahead buffer
+     * @param seed seed the stream started from
+     * @param random stream to draw from
+     * @param lookahead number of pieces to keep ready
+     */
+    private RandomPieceSource(long seed, SplittableRandom random, int lookahead) {
+        this.seed = seed;
+        this.random = random;
+        this.buffer = new byte[lookahead];
+        for (int i = 0; i < lookahead; i++) {
+            buffer[i] = draw();
+        }
+    }
+
+    /**
+     * Draw a piece number from the stream
+     * @return piece number
+     */
+    private byte draw() {
+        return (byte) random.nextInt(GamePiece.PIECES);
+    }
+
+    /**
+     * Take the next piece and draw another into the buffer in its place
+     * @return the next piece
+     */
+    @Override
+    public GamePiece next() {
+        int piece = buffer[head];
+        buffer[head] = draw();
+        head = (head + 1) % buffer.length;
+        return GamePiece.createPiece(piece);
+    }
+
+    /**
+     * Look at an upcoming piece without taking it
+     * @param ahead how far ahead to look, 0 is the piece next will return
+     * @return the piece, or null if it is further ahead than the buffer holds
+     */
+    @Override
+    public GamePiece peek(int ahead) {
+        if (ahead < 0 || ahead >= buffer.length) return null;
+        return GamePiece.createPiece(buffer[(head + ahead) % buffer.length]);
+    }
+
+    /**
+     * Create an independent source from this one's stream, for example one per game in a parallel simulation. The
+     * pieces it deals are fixed by this source's seed, however the sources are shared out between threads.
+     * @return the new source
+     */
+    public RandomPieceSource split() {
+        return new RandomPieceSource(random.split());
+    }
+
+    /**
+     * Get the seed this source started from, to play the same pieces again
+     * @return seed, or 0 if this source was split from another
+     */
+    public long getSeed() {
+        return seed;
+    }
+}
@@ -1,47 +1,109 @@
 package uk.ac.soton.comp1206.network;
 
 import com.neovisionaries.ws.client.*;
-import javafx.scene.control.Alert;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.event.CommunicationsListener;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Uses web sockets to talk to a web socket server and relays communication to attached listeners
+ * Uses web sockets to talk to a web socket server and relays communication to attached listeners. Listeners are
+ * registered for the command they handle, and each message is routed only to those for its command. Messages sent
+ * are queued and written by a thread of their own, so sending never waits on the connection.
  *
- * YOU DO NOT NEED TO WORRY ABOUT THIS CLASS! Leave it be :-)
+ * The connection is made in the background, and made again whenever it drops, waiting longer after each failed
+ * attempt. The game carries on offline in the meantime, with messages held in the send queue until there is a
+ * connection to send them on. Once reconnected, the nickname, channel and any pieces still awaited are sent again so
+ * the server picks up where it left off.
  */
 public class Communicator {
 
     private static final Logger logger = LogManager.getLogger(Communicator.class);
 
     /**
-     * Attached communication listeners listening to messages on this Communicator. Each will be sent any messages.
+     * Wait before the first reconnect attempt, in milliseconds, doubled after each failure
      */
-    private final List<CommunicationsListener> handlers = new ArrayList<>();
+    private static final long BACKOFF_BASE = 500;
 
+    /**
+     * Longest wait between reconnect attempts, in milliseconds
+     */
+    private static final long BACKOFF_MAX = 30_000;
+
+    /**
+     * How long a connection attempt may take, in milliseconds
+     */
+    private static final int CONNECT_TIMEOUT = 5_000;
+
+    /**
+     * Routes messages to the communication listeners attached to this Communicator, by command
+     */
+    private final MessageDispatcher handlers = new MessageDispatcher();
+
+    /**
+     * Server to connect to
+     */
+    private final String server;
+
+    /**
+     * Makes the web sockets
+     */
+    private final WebSocketFactory socketFactory = new WebSocketFactory().setConnectionTimeout(CONNECT_TIMEOUT);
+
+    /**
+     * Makes connection attempts, one at a time
+     */
+    private final ScheduledExecutorService connector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "Communicator connector");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * What the server needs telling again after reconnecting
+     */
+    private final Session session = new Session();
+
+    /**
+     * Current web socket, or null while not connected. Only the connector changes it.
+     */
     private WebSocket ws = null;
 
     /**
-     * Create a new communicator to the given web socket server
+     * Failed connection attempts since the last success
+     */
+    private int attempts = 0;
+
+    /**
+     * Messages waiting to be written to the web socket
+     */
+    private final SendQueue outbound = new SendQueue(this::write);
+
+    /**
+     * Create a new communicator to the given web socket server, and start connecting to it in the background
      *
      * @param server server to connect to
      */
     public Communicator(String server) {
+        this.server = server;
+        connector.execute(this::connect);
+    }
 
+    /**
+     * Try to connect, on the connector thread. On failure, try again after a while.
+     */
+    private void connect() {
+        WebSocket socket;
         try {
-            var socketFactory = new WebSocketFactory();
-
-            //Connect to the server
-            ws = socketFactory.createSocket(server);
-            ws.connect();
-            logger.info("Connected to " + server);
+            socket = socketFactory.createSocket(server);
 
             //When a message is received, call the receive method
-            ws.addListener(new WebSocketAdapter() {
+            socket.addListener(new WebSocketAdapter() {
                 @Override
                 public void onTextMessage(WebSocket websocket, String message) throws Exception {
                     Communicator.this.receive(websocket, message);
@@ -50,10 +112,15 @@ public class Communicator {
                 public void onPingFrame(WebSocket webSocket, WebSocketFrame webSocketFrame) throws Exception {
                     logger.info("Ping? Pong!");
                 }
+                @Override
+                public void onDisconnected(WebSocket websocket, WebSocketFrame serverCloseFrame,
+                                           WebSocketFrame clientCloseFrame, boolean closedByServer) throws Exception {
+                    connector.execute(() -> disconnected(websocket));
+                }
             });
 
             //Error handling
-            ws.addListener(new WebSocketAdapter() {
+            socket.addListener(new WebSocketAdapter() {
                 @Override
                 public void onTextMessage(WebSocket websocket, String message) throws Exception {
                     if(message.startsWith("ERROR")) {
@@ -62,42 +129,137 @@ public class Communicator {
                 }
                 @Override
                 public void handleCallbackError(WebSocket webSocket, Throwable throwable) throws Exception {
-                    logger.error("Callback Error:" + throwable.getMessage());
-                    throwable.printStackTrace();
+                    logger.error("Callback error", throwable);
                 }
                 @Override
                 public void onError(WebSocket webSocket, WebSocketException e) throws Exception {
-                    logger.error("Error:" + e.getMessage());
-                    e.printStackTrace();
+                    logger.error("Web socket error", e);
                 }
             });
 
-        } catch (Exception e){
-            logger.error("Socket error: " + e.getMessage());
-            e.printStackTrace();
+            //Connect to the server
+            socket.connect();
+        } catch (Exception e) {
+            attempts++;
+            long delay = backoff(attempts);
+            logger.warn("Unable to connect to {} ({}), trying again in {} ms", server, e.getMessage(), delay);
+            connector.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+            return;
+        }
 
-            Alert error = new Alert(Alert.AlertType.ERROR,"Unable to communicate with the TetrECS server\n\n" + e.getMessage() + "\n\nPlease ensure you are connected to the VPN");
-            error.showAndWait();
-            System.exit(1);
+        logger.info("Connected to " + server);
+        //Put the server back where it was before anything queued in the meantime is sent
+        List<String> replay = session.replay();
+        for (var message : replay) {
+            logger.info("Resuming session: {}", message);
+            socket.sendText(message);
+        }
+        synchronized (this) {
+            ws = socket;
+            attempts = 0;
+            notifyAll();
         }
     }
 
-    /** Send a message to the server
+    /**
+     * Handle a connection dropping, on the connector thread, by starting to reconnect
+     * @param socket the socket which dropped
+     */
+    private void disconnected(WebSocket socket) {
+        synchronized (this) {
+            //Already handled, or an attempt which never connected
+            if (ws != socket) return;
+            ws = null;
+        }
+        attempts++;
+        long delay = backoff(attempts);
+        logger.warn("Lost connection to {}, reconnecting in {} ms", server, delay);
+        connector.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Work out how long to wait before the next attempt. The wait doubles with each failed attempt up to a limit, and
+     * a random half of it is taken off so that clients which dropped together do not all come back together.
+     * @param attempt number of failed attempts so far
+     * @return wait in milliseconds
+     */
+    private static long backoff(int attempt) {
+        long delay = Math.min(BACKOFF_MAX, BACKOFF_BASE << Math.min(attempt - 1, 16));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Write a message to the web socket, on the send queue's writer thread, waiting for a connection if there is none
+     * @param message the message
+     */
+    private void write(String message) {
+        WebSocket socket;
+        synchronized (this) {
+            while (ws == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            socket = ws;
+        }
+        session.sent(message);
+        socket.sendText(message);
+    }
+
+    /**
+     * Whether there is a connection to the server at the moment
+     * @return true if connected
+     */
+    public synchronized boolean isConnected() {
+        return ws != null;
+    }
+
+    /** Send a message to the server. The message is queued and sent in the background, safe to call from any thread.
      *
      * @param message Message to send
      */
     public void send(String message) {
-        logger.info("Sending message: " + message);
+        outbound.offer(message);
+    }
 
-        ws.sendText(message);
+    /**
+     * Get the queue of messages waiting to be sent, for its figures
+     * @return the send queue
+     */
+    public SendQueue getSendQueue() {
+        return outbound;
+    }
+
+    /**
+     * Add a new listener to receive every message from the server
+     * @param listener the listener to add
+     * @return subscription which removes the listener when released
+     */
+    public Subscription addListener(CommunicationsListener listener) {
+        return this.handlers.add(listener);
     }
 
     /**
-     * Add a new listener to receive messages from the server
+     * Add a new listener to receive messages from the server starting with the given command. Scenes should use
+     * BaseScene.listen instead, which removes the listener when the scene is left.
+     * @param command the command, such as SCORES
      * @param listener the listener to add
+     * @return subscription which removes the listener when released
+     */
+    public Subscription addListener(String command, CommunicationsListener listener) {
+        return this.handlers.add(command, listener);
+    }
+
+    /**
+     * Remove a listener added for the given command
+     * @param command the command it was added for
+     * @param listener the listener to remove
      */
-    public void addListener(CommunicationsListener listener) {
-        this.handlers.add(listener);
+    public void removeListener(String command, CommunicationsListener listener) {
+        this.handlers.remove(command, listener);
     }
 
     /**
@@ -107,17 +269,33 @@ public class Communicator {
         this.handlers.clear();
     }
 
+    /**
+     * Count the listeners currently attached
+     * @return number of listeners
+     */
+    public int getListenerCount() {
+        return this.handlers.size();
+    }
+
+    /**
+     * Count the calls made to listeners since the communicator was created
+     * @return number of calls
+     */
+    public long getInvocationCount() {
+        return this.handlers.getInvocations();
+    }
+
     /** Receive a message from the server. Relay to any attached listeners
      *
      * @param websocket the socket
      * @param message the message that was received
      */
     private void receive(WebSocket websocket, String message) {
-        logger.info("Received: " + message);
+        logger.debug("Received: {}", message);
+        message = session.received(message);
+        if (message == null) return;
 
-        for(CommunicationsListener handler : handlers) {
-            handler.receiveCommunication(message);
-        }
+        handlers.dispatch(message);
     }
 
 }
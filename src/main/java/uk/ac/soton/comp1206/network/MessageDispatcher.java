@@ -0,0 +1,201 @@
+package uk.ac.soton.comp1206.network;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.CommunicationsListener;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Message Dispatcher hands each message from the server to the listeners registered for its command, the first
+ * word of the message (SCORES, PIECE, MSG, CHANNELS, USERS, JOIN, ...). The command is read once per message and
+ * looked up in a table, so a message only costs as much as the listeners which actually want it, however many others
+ * are registered.
+ *
+ * The table is copy-on-write: adding or removing a listener builds a new table and swaps it in, while dispatching
+ * reads whichever table is current without locking. Listeners can be changed from any thread, including from inside
+ * a listener, and a message already being dispatched is unaffected.
+ *
+ * Registering a listener gives back a Subscription which removes it again. The dispatcher counts the listeners
+ * registered and the calls made to them, so listeners which are never released show up as a count which keeps
+ * growing.
+ */
+public class MessageDispatcher {
+
+    private static final Logger logger = LogManager.getLogger(MessageDispatcher.class);
+
+    /**
+     * Shared by every command with no listeners
+     */
+    private static final CommunicationsListener[] NONE = new CommunicationsListener[0];
+
+    /**
+     * Listeners for each command. Never changed once published, only replaced.
+     */
+    private volatile Map<String, CommunicationsListener[]> routes = Map.of();
+
+    /**
+     * Listeners sent every message, whatever its command. Never changed once published, only replaced.
+     */
+    private volatile CommunicationsListener[] everything = NONE;
+
+    /**
+     * Number of calls made to listeners
+     */
+    private final LongAdder invocations = new LongAdder();
+
+    /**
+     * Register a listener for one command
+     * @param command the command, such as SCORES
+     * @param listener the listener
+     * @return subscription which removes the listener
+     */
+    public Subscription add(String command, CommunicationsListener listener) {
+        synchronized (this) {
+            var table = new HashMap<>(routes);
+            table.put(command, append(table.getOrDefault(command, NONE), listener));
+            routes = Map.copyOf(table);
+        }
+        return Subscription.of(() -> remove(command, listener));
+    }
+
+    /**
+     * Register a listener for every message
+     * @param listener the listener
+     * @return subscription which removes the listener
+     */
+    public Subscription add(CommunicationsListener listener) {
+        synchronized (this) {
+            everything = append(everything, listener);
+        }
+        return Subscription.of(() -> remove(listener));
+    }
+
+    /**
+     * Stop a listener receiving a command
+     * @param command the command it was registered for
+     * @param listener the listener
+     */
+    public synchronized void remove(String command, CommunicationsListener listener) {
+        var listeners = routes.get(command);
+        if (listeners == null) return;
+        var remaining = without(listeners, listener);
+        if (remaining == listeners) return;
+        var table = new HashMap<>(routes);
+        if (remaining.length == 0) {
+            table.remove(command);
+        } else {
+            table.put(command, remaining);
+        }
+        routes = Map.copyOf(table);
+    }
+
+    /**
+     * Stop a listener receiving every message
+     * @param listener the listener
+     */
+    public synchronized void remove(CommunicationsListener listener) {
+        everything = without(everything, listener);
+    }
+
+    /**
+     * Remove every listener
+     */
+    public synchronized void clear() {
+        routes = Map.of();
+        everything = NONE;
+    }
+
+    /**
+     * Count the registered listeners
+     * @return number of listeners
+     */
+    public int size() {
+        int size = everything.length;
+        for (var listeners : routes.values()) {
+            size += listeners.length;
+        }
+        return size;
+    }
+
+    /**
+     * Count the calls made to listeners so far
+     * @return number of calls
+     */
+    public long getInvocations() {
+        return invocations.sum();
+    }
+
+    /**
+     * Hand a message to the listeners for its command, and to those listening to everything
+     * @param message the message
+     */
+    public void dispatch(String message) {
+        var listeners = routes.getOrDefault(command(message), NONE);
+        for (var listener : listeners) {
+            deliver(listener, message);
+        }
+        for (var listener : everything) {
+            deliver(listener, message);
+        }
+    }
+
+    /**
+     * Read the command from the start of a message, up to the first space or new line
+     * @param message the message
+     * @return the command
+     */
+    public static String command(String message) {
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c == ' ' || c == '\n') return message.substring(0, i);
+        }
+        return message;
+    }
+
+    /**
+     * Hand a message to one listener, so one which fails does not stop the rest
+     * @param listener the listener
+     * @param message the message
+     */
+    private void deliver(CommunicationsListener listener, String message) {
+        invocations.increment();
+        try {
+            listener.receiveCommunication(message);
+        } catch (RuntimeException e) {
+            logger.error("Listener failed on message: " + message, e);
+        }
+    }
+
+    /**
+     * Copy listeners with one more on the end
+     * @param listeners current listeners
+     * @param listener listener to add
+     * @return the new listeners
+     */
+    private static CommunicationsListener[] append(CommunicationsListener[] listeners, CommunicationsListener listener) {
+        var added = Arrays.copyOf(listeners, listeners.length + 1);
+        added[listeners.length] = listener;
+        return added;
+    }
+
+    /**
+     * Copy listeners without the first occurrence of one
+     * @param listeners current listeners
+     * @param listener listener to remove
+     * @return the new listeners, or the same array if it was not there
+     */
+    private static CommunicationsListener[] without(CommunicationsListener[] listeners, CommunicationsListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] != listener) continue;
+            var removed = new CommunicationsListener[listeners.length - 1];
+            System.arraycopy(listeners, 0, removed, 0, i);
+            System.arraycopy(listeners, i + 1, removed, i, listeners.length - i - 1);
+            return removed;
+        }
+        return listeners;
+    }
+}
@@ -0,0 +1,333 @@
+package uk.ac.soton.comp1206.network;
+
+import javafx.application.Platform;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * The Send Queue takes messages for the server from any thread and sends them from a single writer thread, so a slow
+ * connection holds up the writer rather than whoever is sending, such as the FX thread handling input.
+ *
+ * Messages which only ask for, or report, the latest state (SCORE, SCORES, LIST and USERS) are coalesced: while one
+ * is waiting to be sent, another with the same command replaces it in place rather than queueing behind it. If a
+ * message which cannot be coalesced was queued after the waiting one, the waiting one is removed and the new one
+ * queued at the back instead, so it is never sent ahead of a message that came before it. The writer holds a
+ * coalescable message back for a short window before sending it, so bursts of polls go out as one.
+ *
+ * The queue is bounded. When it is full, the FX thread never waits and its message is dropped; other threads wait a
+ * short while for room before dropping theirs. The queue tracks its depth, how long messages wait before they are
+ * sent, and how many were coalesced or dropped.
+ */
+public class SendQueue {
+
+    private static final Logger logger = LogManager.getLogger(SendQueue.class);
+
+    /**
+     * Most messages waiting to be sent
+     */
+    private static final int CAPACITY = 256;
+
+    /**
+     * How long a coalescable message is held back for others to merge into it, in nanoseconds
+     */
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(25);
+
+    /**
+     * How long a thread other than the FX thread waits for room before dropping its message, in milliseconds
+     */
+    private static final long BLOCK_MILLIS = 100;
+
+    /**
+     * Commands where only the latest message matters
+     */
+    private static final Set<String> COALESCED = Set.of("SCORE", "SCORES", "LIST", "USERS");
+
+    /**
+     * A message waiting to be sent
+     */
+    private static class Entry {
+        /**
+         * The message, replaced if a newer one is coalesced into it
+         */
+        String message;
+
+        /**
+         * Command, if the message can be coalesced, otherwise null
+         */
+        final String command;
+
+        /**
+         * When it was queued, in nanoseconds
+         */
+        final long queued;
+
+        /**
+         * Position in the order messages were queued
+         */
+        final long sequence;
+
+        /**
+         * Create an entry
+         * @param message the message
+         * @param command command if it can be coalesced, or null
+         * @param queued when it was queued
+         * @param sequence position in the order messages were queued
+         */
+        Entry(String message, String command, long queued, long sequence) {
+            this.message = message;
+            this.command = command;
+            this.queued = queued;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Sends a message on the connection, only ever called from the writer thread
+     */
+    private final Consumer<String> sender;
+
+    /**
+     * Guards the queue
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled when a message is queued
+     */
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * Signalled when messages are taken off the queue
+     */
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * Messages waiting to be sent, oldest first
+     */
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+
+    /**
+     * Coalescable messages waiting to be sent, by command
+     */
+    private final Map<String, Entry> waiting = new HashMap<>();
+
+    /**
+     * Sequence number given to the next message queued
+     */
+    private long nextSequence = 0;
+
+    /**
+     * Sequence number of the last message queued which cannot be coalesced, or -1 if there has not been one
+     */
+    private long lastOrdered = -1;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder latencyTotal = new LongAdder();
+    private final AtomicLong latencyMax = new AtomicLong();
+    private final AtomicLong depthMax = new AtomicLong();
+
+    /**
+     * Create a send queue, starting its writer thread
+     * @param sender sends a message on the connection
+     */
+    public SendQueue(Consumer<String> sender) {
+        this.sender = sender;
+        var writer = new Thread(this::write, "Communicator writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queue a message to be sent. Never waits on the FX thread.
+     * @param message the message
+     * @return true if it was queued or coalesced, false if it was dropped because the queue was full
+     */
+    public boolean offer(String message) {
+        var command = MessageDispatcher.command(message);
+        if (!COALESCED.contains(command)) command = null;
+        boolean wait = !Platform.isFxApplicationThread();
+
+        lock.lock();
+        try {
+            if (command != null) {
+                var pending = waiting.get(command);
+                if (pending != null) {
+                    coalesced.increment();
+                    if (pending.sequence > lastOrdered) {
+                        //Nothing queued since needs to go after it, so it can take the newer message where it is
+                        pending.message = message;
+                        return true;
+                    }
+                    //Sending it in place would put it ahead of messages queued since, so it moves to the back
+                    queue.remove(pending);
+                    waiting.remove(command);
+                }
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BLOCK_MILLIS);
+            while (queue.size() >= CAPACITY) {
+                long remaining = deadline - System.nanoTime();
+                if (!wait || remaining <= 0) {
+                    dropped.increment();
+                    logger.warn("Send queue full, dropped: {}", message);
+                    return false;
+                }
+                notFull.awaitNanos(remaining);
+            }
+
+            var entry = new Entry(message, command, System.nanoTime(), nextSequence++);
+            queue.addLast(entry);
+            if (command != null) {
+                waiting.put(command, entry);
+            } else {
+                lastOrdered = entry.sequence;
+            }
+            depthMax.accumulateAndGet(queue.size(), Math::max);
+            notEmpty.signal();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.increment();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writer thread: take every message which is ready and send them in order
+     */
+    private void write() {
+        var batch = new ArrayList<Entry>();
+        while (true) {
+            try {
+                take(batch);
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (var entry : batch) {
+                logger.debug("Sending message: {}", entry.message);
+                try {
+                    sender.accept(entry.message);
+                } catch (RuntimeException e) {
+                    logger.error("Unable to send message: {}", entry.message, e);
+                    continue;
+                }
+                long latency = System.nanoTime() - entry.queued;
+                sent.increment();
+                latencyTotal.add(latency);
+                latencyMax.accumulateAndGet(latency, Math::max);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Wait for messages to be ready, then move them all into the batch. A coalescable message at the head is held
+     * until its window has passed, keeping the messages in the order they were queued.
+     * @param batch list to fill
+     * @throws InterruptedException if the writer is interrupted
+     */
+    private void take(ArrayList<Entry> batch) throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                var head = queue.peekFirst();
+                if (head == null) {
+                    notEmpty.await();
+                    continue;
+                }
+                long hold = head.command == null ? 0 : head.queued + WINDOW_NANOS - System.nanoTime();
+                if (hold > 0) {
+                    notEmpty.awaitNanos(hold);
+                    continue;
+                }
+                break;
+            }
+            Entry entry;
+            while ((entry = queue.pollFirst()) != null) {
+                if (entry.command != null) waiting.remove(entry.command);
+                batch.add(entry);
+            }
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of messages waiting to be sent
+     * @return queue depth
+     */
+    public int getDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the most messages that have been waiting at once
+     * @return largest queue depth
+     */
+    public long getMaxDepth() {
+        return depthMax.get();
+    }
+
+    /**
+     * Get the number of messages sent
+     * @return messages sent
+     */
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * Get the number of messages merged into one already waiting
+     * @return messages coalesced
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Get the number of messages dropped because the queue was full
+     * @return messages dropped
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Get the average time messages waited before they were sent
+     * @return mean latency in nanoseconds, 0 if nothing has been sent
+     */
+    public long getMeanLatency() {
+        long count = sent.sum();
+        return count == 0 ? 0 : latencyTotal.sum() / count;
+    }
+
+    /**
+     * Get the longest time a message waited before it was sent
+     * @return latency in nanoseconds
+     */
+    public long getMaxLatency() {
+        return latencyMax.get();
+    }
+}
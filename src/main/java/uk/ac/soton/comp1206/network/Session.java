@@ -0,0 +1,124 @@
+package uk.ac.soton.comp1206.network;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Session keeps track of what the server has been told on this connection which it would need telling again on a
+ * new one: the nickname chosen, the channel joined, and pieces asked for which have not arrived yet. It learns these
+ * by watching the messages sent and received, and gives back the messages to replay after reconnecting.
+ *
+ * The channel may not be there to join again, if the server restarted. A game which has started cannot be resumed
+ * at all, as the server refuses to let anyone join a channel once its game is under way. When the server refuses the
+ * replayed JOIN, the session leaves the channel and turns the refusal into PARTED, so the lobby forgets the channel
+ * rather than showing an error, and a multiplayer game carries on offline; the refusals of any pieces replayed after
+ * it are dropped.
+ */
+public class Session {
+
+    /**
+     * Nickname chosen, or null if the server's own is in use
+     */
+    private String nickname;
+
+    /**
+     * Channel joined or created, or null if not in one
+     */
+    private String channel;
+
+    /**
+     * Pieces asked for which the server has not sent yet
+     */
+    private int piecesOutstanding = 0;
+
+    /**
+     * Whether the server has yet to answer a replayed JOIN
+     */
+    private boolean rejoining = false;
+
+    /**
+     * Replayed pieces still to be refused, after the server refused the replayed JOIN
+     */
+    private int piecesRefused = 0;
+
+    /**
+     * Note a message which has been sent to the server
+     * @param message the message
+     */
+    public synchronized void sent(String message) {
+        var command = MessageDispatcher.command(message);
+        switch (command) {
+            case "NICK" -> nickname = argument(message);
+            case "JOIN", "CREATE" -> channel = argument(message);
+            case "PART" -> channel = null;
+            case "PIECE" -> piecesOutstanding++;
+            default -> {}
+        }
+    }
+
+    /**
+     * Note a message which has been received from the server, and work out what listeners should be given
+     * @param message the message
+     * @return the message to pass on, which differs when the server refused a replayed JOIN, or null to pass nothing on
+     */
+    public synchronized String received(String message) {
+        var command = MessageDispatcher.command(message);
+        if (command.equals("ERROR")) {
+            if (rejoining) {
+                //The channel has gone, or its game started while we were away
+                rejoining = false;
+                channel = null;
+                piecesRefused = piecesOutstanding;
+                piecesOutstanding = 0;
+                return "PARTED";
+            }
+            if (piecesRefused > 0) {
+                piecesRefused--;
+                return null;
+            }
+        }
+        switch (command) {
+            case "JOIN" -> {
+                channel = argument(message);
+                rejoining = false;
+            }
+            case "NICK" -> {
+                //Our own nickname comes back as NICK <name>, other players' changes as NICK <old>:<new>
+                var name = argument(message);
+                if (name != null && !name.contains(":")) nickname = name;
+            }
+            case "PARTED" -> channel = null;
+            case "PIECE" -> piecesOutstanding = Math.max(0, piecesOutstanding - 1);
+            default -> {}
+        }
+        return message;
+    }
+
+    /**
+     * Get the messages which put a new connection back where this one was. Pieces asked for again are still counted
+     * as outstanding, as they will now be answered on the new connection.
+     * @return messages to send, in order
+     */
+    public synchronized List<String> replay() {
+        var messages = new ArrayList<String>();
+        if (nickname != null) messages.add("NICK " + nickname);
+        if (channel != null) messages.add("JOIN " + channel);
+        rejoining = channel != null;
+        piecesRefused = 0;
+        for (int i = 0; i < piecesOutstanding; i++) {
+            messages.add("PIECE");
+        }
+        return messages;
+    }
+
+    /**
+     * Get everything after the command in a message
+     * @param message the message
+     * @return the argument, or null if there is none
+     */
+    private static String argument(String message) {
+        int space = message.indexOf(' ');
+        if (space < 0 || space == message.length() - 1) return null;
+        return message.substring(space + 1).trim();
+    }
+}
@@ -0,0 +1,55 @@
+package uk.ac.soton.comp1206.network;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A Subscription is a handle on something registered which has to be undone later, such as a listener on the
+ * Communicator or a repeating task. Releasing it undoes the registration. It can be released from any thread, any
+ * number of times, and only the first has any effect.
+ */
+public final class Subscription {
+
+    /**
+     * Undoes the registration
+     */
+    private final Runnable release;
+
+    /**
+     * Whether it has been released
+     */
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    /**
+     * Create a subscription
+     * @param release undoes the registration, run once when released
+     */
+    private Subscription(Runnable release) {
+        this.release = release;
+    }
+
+    /**
+     * Create a subscription which runs the given action when it is released
+     * @param release undoes the registration
+     * @return the subscription
+     */
+    public static Subscription of(Runnable release) {
+        return new Subscription(release);
+    }
+
+    /**
+     * Undo the registration, if it has not been already
+     */
+    public void release() {
+        if (released.compareAndSet(false, true)) {
+            release.run();
+        }
+    }
+
+    /**
+     * Whether the subscription has been released
+     * @return true if released
+     */
+    public boolean isReleased() {
+        return released.get();
+    }
+}
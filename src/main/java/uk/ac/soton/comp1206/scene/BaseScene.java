@@ -2,12 +2,22 @@ package uk.ac.soton.comp1206.scene;
 
 import javafx.scene.Scene;
 import javafx.scene.paint.Color;
-import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.event.CommunicationsListener;
+import uk.ac.soton.comp1206.network.Subscription;
+import uk.ac.soton.comp1206.ui.AnimationEngine;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
 /**
  * A Base Scene used in the game. Handles common functionality between all scenes.
+ *
+ * Anything a scene registers which outlives a single call, such as a listener on the communicator or a repeating
+ * task, is held as a subscription owned by the scene, and released when the scene is cleaned up.
  */
 public abstract class BaseScene {
 
@@ -16,6 +26,21 @@ public abstract class BaseScene {
     protected GamePane root;
     protected Scene scene;
 
+    /**
+     * Runs every animation in this scene
+     */
+    protected final AnimationEngine animations = new AnimationEngine();
+
+    /**
+     * Time taken to build the scene in the background, in nanoseconds
+     */
+    private long buildTime = 0;
+
+    /**
+     * Subscriptions to release when the scene is left
+     */
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
     /**
      * Create a new scene, passing in the GameWindow the scene will be displayed in
      *
@@ -31,7 +56,9 @@ public abstract class BaseScene {
     public abstract void initialise();
 
     /**
-     * Build the layout of the scene
+     * Build the layout of the scene. Scenes loaded by name are built on a background thread, before the previous scene
+     * has been cleaned up, so their build must not touch the stage, the communicator or anything else shared; that
+     * belongs in initialise.
      */
     public abstract void build();
 
@@ -41,6 +68,9 @@ public abstract class BaseScene {
      */
     public Scene setScene() {
         var previous = gameWindow.getScene();
+        //Attached before the scene is made, so components can find it as soon as they are shown
+        animations.attach(root);
+        gameWindow.getAssets().applyBackgrounds(root);
         Scene scene = new Scene(root, previous.getWidth(), previous.getHeight(), Color.BLACK);
         scene.getStylesheets().add(getClass().getResource("/style/game.css").toExternalForm());
         this.scene = scene;
@@ -55,4 +85,111 @@ public abstract class BaseScene {
         return this.scene;
     }
 
+    /**
+     * Get the pane everything in this scene is drawn in
+     * @return root pane
+     */
+    public GamePane getRoot() {
+        return root;
+    }
+
+    /**
+     * Get the animation engine for this scene
+     * @return animation engine
+     */
+    public AnimationEngine getAnimations() {
+        return animations;
+    }
+
+    /**
+     * Whether the scene can be kept and shown again, rather than built again each time. Such a scene must set itself
+     * up again in initialise, which is called each time it is shown.
+     * @return true if the scene can be reused
+     */
+    public boolean isReusable() {
+        return false;
+    }
+
+    /**
+     * Set how long the scene took to build in the background
+     * @param buildTime build time in nanoseconds
+     */
+    public void setBuildTime(long buildTime) {
+        this.buildTime = buildTime;
+    }
+
+    /**
+     * Get how long the scene took to build in the background
+     * @return build time in nanoseconds
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    /**
+     * Keep a subscription until the scene is left, then release it
+     * @param subscription the subscription
+     * @return the same subscription, so it can be released sooner
+     */
+    protected Subscription own(Subscription subscription) {
+        synchronized (subscriptions) {
+            subscriptions.add(subscription);
+        }
+        return subscription;
+    }
+
+    /**
+     * Listen for a command from the server until the scene is left. Safe to call from any thread.
+     * @param command the command, such as SCORES
+     * @param listener the listener
+     * @return subscription which removes the listener
+     */
+    protected Subscription listen(String command, CommunicationsListener listener) {
+        return own(gameWindow.getCommunicator().addListener(command, listener));
+    }
+
+    /**
+     * Run a task on a background thread every so often until the scene is left, starting straight away
+     * @param name name of the thread
+     * @param period time between runs, in milliseconds
+     * @param task the task
+     * @return subscription which stops the task
+     */
+    protected Subscription repeat(String name, long period, Runnable task) {
+        var timer = new Timer(name, true);
+        timer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                task.run();
+            }
+        }, 0, period);
+        return own(Subscription.of(timer::cancel));
+    }
+
+    /**
+     * Count the subscriptions the scene is holding
+     * @return number of subscriptions
+     */
+    public int getSubscriptionCount() {
+        synchronized (subscriptions) {
+            return subscriptions.size();
+        }
+    }
+
+    /**
+     * Called when the scene is being replaced, to stop anything still running in it and release everything it
+     * subscribed to
+     */
+    public void cleanup() {
+        animations.stop();
+        List<Subscription> released;
+        synchronized (subscriptions) {
+            released = new ArrayList<>(subscriptions);
+            subscriptions.clear();
+        }
+        for (var subscription : released) {
+            subscription.release();
+        }
+    }
+
 }
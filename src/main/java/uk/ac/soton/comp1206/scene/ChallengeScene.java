@@ -1,13 +1,10 @@
 package uk.ac.soton.comp1206.scene;
 
-import javafx.animation.KeyFrame;
-import javafx.animation.KeyValue;
-import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
@@ -16,16 +13,18 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Text;
-import javafx.util.Duration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.component.GameBlock;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
 import uk.ac.soton.comp1206.component.GameBoard;
 import uk.ac.soton.comp1206.component.PieceBoard;
 import uk.ac.soton.comp1206.event.ModeListener;
+import uk.ac.soton.comp1206.game.CellSet;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Hint;
+import uk.ac.soton.comp1206.game.HintEngine;
+import uk.ac.soton.comp1206.ui.AnimationEngine;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 import uk.ac.soton.comp1206.ui.Multimedia;
@@ -33,7 +32,6 @@ import uk.ac.soton.comp1206.ui.Multimedia;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.HashSet;
 import java.util.List;
 
 /**
@@ -76,6 +74,38 @@ public class ChallengeScene extends BaseScene {
      * Current game mode
      */
     public String mode;
+    /**
+     * Searches for the best placement when hints are turned on
+     */
+    private final HintEngine hintEngine = new HintEngine();
+    /**
+     * Whether hints are shown
+     */
+    private boolean showHints = false;
+    /**
+     * How long the current round lasts in milliseconds, set by the game loop
+     */
+    private volatile int timerLength;
+    /**
+     * Set when a new round starts, so the timer bar starts again from the next frame
+     */
+    private volatile boolean timerRestart;
+    /**
+     * Time the current round started on the timer bar, in nanoseconds
+     */
+    private long timerStart;
+    /**
+     * Shrinks the timer bar over the round
+     */
+    private final AnimationEngine.Effect timerEffect = this::tickTimer;
+    /**
+     * How long a score pop takes to rise and fade, in nanoseconds
+     */
+    private static final long POP_NANOS = 1_000_000_000L;
+    /**
+     * How far a score pop rises
+     */
+    private static final double POP_RISE = 60;
 
 
     /**
@@ -124,10 +154,10 @@ public class ChallengeScene extends BaseScene {
         mainPane.setTop(top);
 
         //Title
-        Image image = new Image(getClass().getResourceAsStream("/images/TetrECS.png"));
-        ImageView title = new ImageView(image);
+        ImageView title = new ImageView();
         title.setPreserveRatio(true);
         title.setFitHeight(100);
+        gameWindow.getAssets().setImage(title, "TetrECS.png");
 
         //Score
         var scoreBox = new VBox();
@@ -139,6 +169,7 @@ public class ChallengeScene extends BaseScene {
         //Binds score's textProperty to the IntegerProperty saved in Game class.
         score.textProperty().bind(soloGame.score.asString());
         scoreBox.getChildren().addAll(scoreText, score);
+        showScorePops(soloGame, challengePane);
 
         //Lives
         var livesBox = new VBox();
@@ -294,19 +325,55 @@ public class ChallengeScene extends BaseScene {
      * @param gp GamePiece
      */
     public void nextPiece(GamePiece gp) {
-        currentPieceBoard.setPiece(soloGame.currentPiece);
-        nextPieceBoard.setPiece(soloGame.nextPiece);
+        currentPieceBoard.setPiece(soloGame.getCurrentPiece());
+        board.setGhostPiece(soloGame.getCurrentPiece());
+        nextPieceBoard.setPiece(soloGame.getNextPiece());
+        //The old hint is for a piece which has gone, the game loop may call this off the FX thread
+        hintEngine.cancel();
+        Platform.runLater(this::updateHint);
+    }
+
+    /**
+     * Turn hints on or off
+     */
+    public void toggleHints() {
+        showHints = !showHints;
+        logger.info("Hints {}", showHints ? "on" : "off");
+        updateHint();
+    }
+
+    /**
+     * Start looking for a hint for the current pieces if hints are on, otherwise remove the hint
+     */
+    private void updateHint() {
+        hintEngine.cancel();
+        board.showHint(0, false);
+        nextPieceBoard.highlight(false);
+        if (!showHints) return;
+        hintEngine.findHint(soloGame.getEngine()).thenAccept(hint -> Platform.runLater(() -> showHint(hint)));
+    }
+
+    /**
+     * Show a hint on the board. The outline has the shape of the piece in the rotation to play it in; a hint which
+     * needs the pieces swapping is outlined in blue, with the next piece outlined to match.
+     * @param hint hint to show, or null if neither piece fits
+     */
+    private void showHint(Hint hint) {
+        if (!showHints || hint == null) return;
+        logger.info("Hint: {}", hint);
+        board.showHint(hint.getMask(), hint.isSwap());
+        nextPieceBoard.highlight(hint.isSwap());
     }
 
     /**
      * Causes the block to fade away when a line is completed
-     * @param coordinates coordinates of the blocks which will disappear
+     * @param cells cells of the blocks which will disappear
      */
 
-    public void fadeOut(HashSet<GameBlockCoordinate> coordinates) {
+    public void fadeOut(CellSet cells) {
         logger.info("Fade out");
         //Fade out animation
-        board.fadeOut(coordinates);
+        board.fadeOut(cells);
     }
 
     /**
@@ -320,13 +387,22 @@ public class ChallengeScene extends BaseScene {
     }
 
     /**
-     * Method to rotate current piece
+     * Method to rotate current piece once to the right
      */
     public void rotate() {
+        rotate(1);
+    }
+
+    /**
+     * Method to rotate current piece
+     * @param rotations number of quarter turns to the right, negative to rotate left
+     */
+    public void rotate(int rotations) {
         logger.info("Block rotated");
         Multimedia.playAudio("rotate.wav");
-        soloGame.rotateCurrentPiece(soloGame.currentPiece);
-        currentPieceBoard.setPiece(soloGame.currentPiece);
+        soloGame.rotateCurrentPiece(rotations);
+        currentPieceBoard.setPiece(soloGame.getCurrentPiece());
+        board.setGhostPiece(soloGame.getCurrentPiece());
     }
 
     /**
@@ -335,8 +411,19 @@ public class ChallengeScene extends BaseScene {
     public void swapPiece() {
         Multimedia.playAudio("pling.wav");
         soloGame.swapCurrentPiece();
-        currentPieceBoard.setPiece(soloGame.currentPiece);
-        nextPieceBoard.setPiece(soloGame.nextPiece);
+        currentPieceBoard.setPiece(soloGame.getCurrentPiece());
+        board.setGhostPiece(soloGame.getCurrentPiece());
+        nextPieceBoard.setPiece(soloGame.getNextPiece());
+        //The hint was for the pieces the other way round
+        updateHint();
+    }
+
+    /**
+     * Stop the game and the hint search
+     */
+    private void endGame() {
+        hintEngine.shutdown();
+        soloGame.shutdown();
     }
 
     /**
@@ -381,9 +468,7 @@ public class ChallengeScene extends BaseScene {
 
         //Left rotation
         if (keyboard.equals(KeyCode.Q) || keyboard.equals(KeyCode.Z) || keyboard.equals(KeyCode.OPEN_BRACKET)) {
-            for (int i = 0; i < 3; i++) {
-                rotate();
-            }
+            rotate(-1);
         }
 
         //Rotate right
@@ -391,15 +476,17 @@ public class ChallengeScene extends BaseScene {
             rotate();
         }
 
+        //Toggle hints
+        if (keyboard.equals(KeyCode.H)) {
+            toggleHints();
+        }
+
         //Discard block and reset game loop
         if (keyboard.equals(KeyCode.V)) {
             soloGame.gameLoop();
         }
 
-        //Clear all hovered blocks
-        board.resetHover();
-
-        // Update the new hovered block
+        //Move the hover and ghost, only the cells which change are repainted
         GameBlock newHoveredBlock = board.getBlock(x, y);
         board.hover(newHoveredBlock);
     }
@@ -409,10 +496,19 @@ public class ChallengeScene extends BaseScene {
      */
     public void gameOver() {
         logger.info("Game over");
+        hideTimer();
+        hintEngine.shutdown();
+        gameWindow.startScores(soloGame);
+    }
+
+    /**
+     * Stop the timer bar and hide it
+     */
+    protected void hideTimer() {
+        animations.remove(timerEffect);
         timerBar.setWidth(0);
         timerBar.setHeight(0);
         timerBar.setOpacity(0);
-        gameWindow.startScores(soloGame);
     }
 
     /**
@@ -434,22 +530,74 @@ public class ChallengeScene extends BaseScene {
     }
 
     /**
-     * Timer animation for timer bar which keeps track of time in tehg ame
+     * Timer animation for timer bar which keeps track of time in the game. Each round restarts the same effect, so it
+     * is safe to call every game loop from any thread.
      * @param time amount of time per round
      */
     public void timerAnimation(int time) {
-        Timeline timeline = new Timeline();
-        KeyValue start = new KeyValue(timerBar.widthProperty(), gameWindow.getWidth());
-        KeyValue green = new KeyValue(timerBar.fillProperty(), Color.GREEN);
-        KeyValue yellow = new KeyValue(timerBar.fillProperty(), Color.YELLOW);
-        KeyValue red = new KeyValue(timerBar.fillProperty(), Color.RED);
-        KeyValue end = new KeyValue(timerBar.widthProperty(), 0);
-        timeline.getKeyFrames().add(new KeyFrame(new Duration(0), start));
-        timeline.getKeyFrames().add(new KeyFrame(new Duration(0), green));
-        timeline.getKeyFrames().add(new KeyFrame(new Duration((float) time/2), yellow));
-        timeline.getKeyFrames().add(new KeyFrame(new Duration((float) time * 3/4), red));
-        timeline.getKeyFrames().add(new KeyFrame(new Duration(time), end));
-        timeline.play();
+        timerLength = time;
+        timerRestart = true;
+        animations.add(timerEffect);
+    }
+
+    /**
+     * Move the timer bar on to the current frame. It shrinks over the round, going from green to yellow half way and
+     * to red three quarters of the way.
+     * @param now time of the frame in nanoseconds
+     * @return true until the round has run out
+     */
+    private boolean tickTimer(long now) {
+        if (timerRestart) {
+            timerRestart = false;
+            timerStart = now;
+        }
+        double progress = Math.min(1, (now - timerStart) / (timerLength * 1_000_000.0));
+        timerBar.setWidth(gameWindow.getWidth() * (1 - progress));
+        if (progress < 0.5) {
+            timerBar.setFill(Color.GREEN.interpolate(Color.YELLOW, progress / 0.5));
+        } else {
+            timerBar.setFill(Color.YELLOW.interpolate(Color.RED, Math.min(1, (progress - 0.5) / 0.25)));
+        }
+        return progress < 1;
+    }
+
+    /**
+     * Show the points gained each time the score goes up, rising and fading over the given pane
+     * @param game game whose score to follow
+     * @param pane pane to show the points over
+     */
+    protected void showScorePops(Game game, StackPane pane) {
+        game.score.addListener((observable, oldScore, newScore) -> {
+            int gained = newScore.intValue() - oldScore.intValue();
+            if (gained <= 0) return;
+            if (Platform.isFxApplicationThread()) {
+                scorePop(pane, gained);
+            } else {
+                Platform.runLater(() -> scorePop(pane, gained));
+            }
+        });
+    }
+
+    /**
+     * Show a single score pop, which removes itself once it has faded
+     * @param pane pane to show it over
+     * @param gained points gained
+     */
+    private void scorePop(StackPane pane, int gained) {
+        var pop = new Text("+" + gained);
+        pop.getStyleClass().add("score");
+        pop.setMouseTransparent(true);
+        pane.getChildren().add(pop);
+        long[] start = {0};
+        animations.add(now -> {
+            if (start[0] == 0) start[0] = now;
+            double progress = Math.min(1, (double) (now - start[0]) / POP_NANOS);
+            pop.setTranslateY(-POP_RISE * progress);
+            pop.setOpacity(1 - progress);
+            if (progress < 1) return true;
+            pane.getChildren().remove(pop);
+            return false;
+        });
     }
 
     /**
@@ -461,8 +609,9 @@ public class ChallengeScene extends BaseScene {
         //When gameloop is reset or ends, timer is updated and getTimerDelay is passed in
         soloGame.setOnGameLoop(this::timerAnimation);
         soloGame.start();
-        currentPieceBoard.setPiece(soloGame.currentPiece);
-        nextPieceBoard.setPiece(soloGame.nextPiece);
+        currentPieceBoard.setPiece(soloGame.getCurrentPiece());
+        board.setGhostPiece(soloGame.getCurrentPiece());
+        nextPieceBoard.setPiece(soloGame.getNextPiece());
         Multimedia.playMusic("game_start.wav");
         //Links fadeOut method with lineCleared in interface due to same method signature.
         soloGame.setOnLineCleared(this::fadeOut);
@@ -473,7 +622,7 @@ public class ChallengeScene extends BaseScene {
             keyboardSupport(event);
             if (event.getCode().equals(KeyCode.ESCAPE)) {
                 gameWindow.startMenu();
-                soloGame.shutdown();
+                endGame();
             }
         });
         scene.setOnMouseClicked(event -> {
@@ -46,6 +46,15 @@ public class DifficultyScene extends BaseScene {
 
     }
 
+    /**
+     * The difficulty choice is kept and shown again rather than rebuilt
+     * @return true
+     */
+    @Override
+    public boolean isReusable() {
+        return true;
+    }
+
     @Override
     public void build() {
         logger.info("Building " + this.getClass().getName());
@@ -80,6 +89,11 @@ public class DifficultyScene extends BaseScene {
         var challenge = new Text("Challenge");
         challenge.getStyleClass().add("bigtitle");
 
+        //Start building the game as soon as the player looks like choosing it
+        easy.setOnMouseEntered(event -> gameWindow.prepareChallenge("easy"));
+        normal.setOnMouseEntered(event -> gameWindow.prepareChallenge("normal"));
+        challenge.setOnMouseEntered(event -> gameWindow.prepareChallenge("challenge"));
+
         easy.setOnMouseClicked(event -> {
             gameWindow.startChallenge("easy");
         });
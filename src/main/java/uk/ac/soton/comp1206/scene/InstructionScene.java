@@ -1,7 +1,6 @@
 package uk.ac.soton.comp1206.scene;
 
 import javafx.geometry.Pos;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.*;
@@ -44,6 +43,15 @@ public class InstructionScene extends BaseScene{
         });
     }
 
+    /**
+     * The instructions are kept and shown again rather than rebuilt
+     * @return true
+     */
+    @Override
+    public boolean isReusable() {
+        return true;
+    }
+
     /**
      * Build the layout of the scene
      */
@@ -89,10 +97,10 @@ public class InstructionScene extends BaseScene{
         pieces.setAlignment(Pos.CENTER);
 
         //Image
-        Image instructions = new Image("C:\\Users\\neimad\\Documents\\COMP1206cwk\\coursework\\src\\main\\resources\\images\\Instructions.png");
-        ImageView instructionView = new ImageView(instructions);
+        ImageView instructionView = new ImageView();
         instructionView.setPreserveRatio(true);
         instructionView.setFitHeight(360);
+        gameWindow.getAssets().setImage(instructionView, "Instructions.png");
 
         for (int i = 0; i < 3; i++) {
             for (int j = 0; j < 5; j++) {
@@ -19,8 +19,6 @@ import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 import uk.ac.soton.comp1206.ui.Multimedia;
 
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -37,10 +35,6 @@ public class LobbyScene extends BaseScene{
      * Communicator variable
      */
     Communicator com;
-    /**
-     * Timer variable to keep requesting channels
-     */
-    Timer timer;
     /**
      * Checks if user is host, if they are they can start the game
      */
@@ -131,31 +125,73 @@ public class LobbyScene extends BaseScene{
      */
     public void requestCurrentChannels() {
         logger.info("Requesting current channels");
-        timer = new Timer();
         requestChannels();
+        //Every 2 seconds asks for the channels again, until the lobby is left
+        repeat("Channel list", 2000, () -> {
+            com.send("LIST");
+            logger.info(channelList.toString());
+        });
+    }
+
+    /**
+     * Listens for everything the server sends to the lobby. Each listener is added once and lasts until the lobby is
+     * left; the requests below only send, so asking again does not add another listener.
+     */
+    public void listenToServer() {
         error();
-        //Every 3 seconds it calls timer task (run)
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                com.send("LIST");
-                logger.info(channelList.toString());
-                gameStart();
-            }
-        }, 0,2000);
+        gameStart();
+
+        listen("CHANNELS", message -> {
+            logger.info("CHANNELS have been requested");
+            channelList.clear();
+            handleChannel(message.substring(9));
+
+            Platform.runLater(() -> channelHandler());
+            Platform.runLater(() -> setUpChannel());
+            Platform.runLater(() -> handleUsers());
+            Platform.runLater(() -> setUpChat());
+        });
+
+        listen("JOIN", message -> {
+            logger.info("Joining another channel");
+            String channel = message.substring(5);
+            logger.info(channel);
+            joinChannel(channel);
+            handleUsers();
+        });
+
+        listen("USERS", message -> {
+            userList.clear();
+            message = message.substring(6);
+            String[] users = message.split("\n");
+            userList.addAll(users);
+        });
+
+        listen("HOST", message -> {
+            isHost = true;
+        });
+
+        listen("PARTED", message -> {
+            currentChannel.set("");
+        });
+
+        handleNick();
+
+        //Listens for messages
+        listen("MSG", msg -> {
+            chat.appendText(msg.substring(4) + "\n");
+        });
     }
 
     /**
      * Handles error message received from the server
      */
     public void error() {
-        com.addListener(message -> {
+        listen("ERROR", message -> {
             logger.info("Error message: " + message);
             if (currentChannel.get() != "") {
-                if (message.startsWith("ERROR")) {
-                    logger.info("Forced to quit");
-                    Platform.runLater(() -> handleError(message));
-                }
+                logger.info("Forced to quit");
+                Platform.runLater(() -> handleError(message));
             }
         });
     }
@@ -164,18 +200,6 @@ public class LobbyScene extends BaseScene{
      * Requests a list of available channels from server
      */
     public void requestChannels() {
-        com.addListener(message -> {
-            if (message.startsWith("CHANNELS")) {
-                logger.info("CHANNELS have been requested");
-                channelList.clear();
-                handleChannel(message.substring(9));
-
-                Platform.runLater(() -> channelHandler());
-                Platform.runLater(() -> setUpChannel());
-                Platform.runLater(() -> handleUsers());
-                Platform.runLater(() -> setUpChat());
-            }
-        });
         //Gets list of all channels
         com.send("LIST");
     }
@@ -185,16 +209,6 @@ public class LobbyScene extends BaseScene{
      * @param channelName Name of the channel to be joined
      */
     public void joinRequest(String channelName) {
-        com.addListener(message -> {
-            if (message.startsWith("JOIN")) {
-                logger.info("Joining another channel");
-                String channel = message.substring(5);
-                logger.info(channel);
-                joinChannel(channel);
-                handleUsers();
-                handleNick();
-            }
-        });
         if (!channelName.isEmpty()) {
             logger.info("Joining channel " + channelName);
             com.send("JOIN " + channelName);
@@ -205,26 +219,16 @@ public class LobbyScene extends BaseScene{
      * Game started by host
      */
     public void gameStart() {
-        com.addListener(message -> {
-            if (message.startsWith("START")) {
-                Multimedia.stopMusic();
-                gameWindow.startMultiplayerScene();
-            }
+        listen("START", message -> {
+            Multimedia.stopMusic();
+            gameWindow.startMultiplayerScene();
         });
     }
 
     /**
-     * Handles users in the current channel, adds it to userList
+     * Requests the users in the current channel, which are added to userList when they arrive
      */
     public void handleUsers() {
-        com.addListener(message -> {
-            if (message.startsWith("USERS")) {
-                userList.clear();
-                message = message.substring(6);
-                String[] users = message.split("\n");
-                userList.addAll(users);
-            }
-        });
         com.send("USERS");
     }
 
@@ -245,11 +249,6 @@ public class LobbyScene extends BaseScene{
      */
     public void createChannel(String channelName) {
         logger.info("New channel has been created called: " + channelName);
-        com.addListener(message -> {
-            if (message.startsWith("HOST")) {
-                isHost = true;
-            }
-        });
         if (!channelName.isEmpty()) {
             com.send("CREATE " + channelName);
             Platform.runLater(() -> joinChannel(channelName));
@@ -260,23 +259,21 @@ public class LobbyScene extends BaseScene{
      * Handles nickname changes from other users
      */
     public void handleNick() {
-        com.addListener(message -> {
-            if (message.startsWith("NICK")) {
-                message = message.substring(5);
-                String[] nicks = message.split(":");
-                int nickCount = 1;
-                if (nicks.length > 1) {
-                    for (String s: userList) {
-                        if (s == nicks[0]) {
-                            logger.info(nickCount + " and name is: " + nicks[1]);
-                            userList.set(nickCount, nicks[1]);
-                        } else {
-                            nickCount++;
-                        }
+        listen("NICK", message -> {
+            message = message.substring(5);
+            String[] nicks = message.split(":");
+            int nickCount = 1;
+            if (nicks.length > 1) {
+                for (String s: userList) {
+                    if (s == nicks[0]) {
+                        logger.info(nickCount + " and name is: " + nicks[1]);
+                        userList.set(nickCount, nicks[1]);
+                    } else {
+                        nickCount++;
                     }
                 }
-
             }
+
         });
     }
 
@@ -367,12 +364,6 @@ public class LobbyScene extends BaseScene{
      * Leaving channel user is currently in
      */
     public void leaveChannel() {
-        com.addListener(message -> {
-            if (message.startsWith("PARTED")) {
-                currentChannel.set("");
-            }
-        });
-
         //Removing all the elements when you leave current lobby
         chatBox.getChildren().clear();
         count = 0;
@@ -544,15 +535,9 @@ public class LobbyScene extends BaseScene{
         channelHandler();
         setUpChannel();
         setUpChat();
+        listenToServer();
         requestCurrentChannels();
 
-        //Listens for messages
-        com.addListener(msg -> {
-            if (msg.startsWith("MSG")) {
-                chat.appendText(msg.substring(4) + "\n");
-            }
-        });
-
         //Bottom box to start game
         bottomBox = new HBox();
         bottomBox.setAlignment(Pos.CENTER);
@@ -6,7 +6,6 @@ import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.scene.text.Text;
@@ -24,6 +23,11 @@ public class MenuScene extends BaseScene {
 
     private static final Logger logger = LogManager.getLogger(MenuScene.class);
 
+    /**
+     * Rocks the title back and forth while the menu is shown
+     */
+    private RotateTransition titleAnimation;
+
     /**
      * Create a new menu scene
      * @param gameWindow the Game Window this will be displayed in
@@ -64,19 +68,18 @@ public class MenuScene extends BaseScene {
         mainPane.setCenter(menu);
 
         //Title
-        Image image = new Image(getClass().getResourceAsStream("/images/TetrECS.png"));
-        ImageView title = new ImageView(image);
+        ImageView title = new ImageView();
         title.setPreserveRatio(true);
         title.setFitHeight(140);
+        gameWindow.getAssets().setImage(title, "TetrECS.png");
         top.getChildren().add(title);
 
         //Title animation
-        RotateTransition rt = new RotateTransition(Duration.millis(2000), title);
-        rt.setToAngle(5);
-        rt.setFromAngle(-5);
-        rt.setCycleCount(Animation.INDEFINITE);
-        rt.setAutoReverse(true);
-        rt.play();
+        titleAnimation = new RotateTransition(Duration.millis(2000), title);
+        titleAnimation.setToAngle(5);
+        titleAnimation.setFromAngle(-5);
+        titleAnimation.setCycleCount(Animation.INDEFINITE);
+        titleAnimation.setAutoReverse(true);
 
         //Play button
         var play = new Text("Play");
@@ -120,6 +123,25 @@ public class MenuScene extends BaseScene {
     public void initialise() {
         logger.info("Initialising menu");
         Multimedia.playMusic("menu.mp3");
+        titleAnimation.play();
+    }
+
+    /**
+     * The menu is kept and shown again rather than rebuilt
+     * @return true
+     */
+    @Override
+    public boolean isReusable() {
+        return true;
+    }
+
+    /**
+     * Pause the title while the menu is not shown
+     */
+    @Override
+    public void cleanup() {
+        super.cleanup();
+        titleAnimation.pause();
     }
 
     /**
@@ -4,16 +4,11 @@ import javafx.application.Platform;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.game.Game;
-import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.QueuePieceSource;
 import uk.ac.soton.comp1206.network.Communicator;
+import uk.ac.soton.comp1206.network.Subscription;
 import uk.ac.soton.comp1206.ui.Multimedia;
 
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.TimeUnit;
-
 /**
  * Multiplayer game class that extends the game class
  */
@@ -24,8 +19,15 @@ public class MultiplayerGame extends Game {
      */
     private Communicator com;
 
-    private final Queue<GamePiece> pieceQueue = new LinkedList<>();
-    private int count = 0;
+    /**
+     * Pieces sent by the server, waiting to be dealt
+     */
+    private final QueuePieceSource pieceQueue;
+
+    /**
+     * Listener for the pieces the server sends
+     */
+    private final Subscription pieceListener;
 
     /**
      * Create a new game with the specified rows and columns. Creates a corresponding grid model.
@@ -34,88 +36,68 @@ public class MultiplayerGame extends Game {
      * @param rows number of rows
      */
     public MultiplayerGame(Communicator com, int cols, int rows) {
-        super(cols, rows);
-        this.com = com;
-        com.send("PIECE");
-        requestPieces();
+        this(com, cols, rows, new QueuePieceSource(() -> com.send("PIECE")));
     }
 
     /**
-     * Start the game
+     * Create a new game dealing the pieces the server sends into the given queue
+     * @param com communicator
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param pieceQueue queue the server's pieces are added to, which asks for another each time one is taken
      */
-    @Override
-    public void start() {
-        logger.info("Starting game");
-        initialiseGame();
-        loop = timer.schedule(this::gameLoop, getTimerDelay(), TimeUnit.MILLISECONDS);
-        if (gameLoopListener != null) {
-            logger.info("Game looped");
-            gameLoopListener.setOnGameLoop(getTimerDelay());
-        }
+    private MultiplayerGame(Communicator com, int cols, int rows, QueuePieceSource pieceQueue) {
+        super(cols, rows, pieceQueue);
+        this.com = com;
+        this.pieceQueue = pieceQueue;
+        //Listening before asking, so the first piece cannot arrive unheard
+        pieceListener = com.addListener("PIECE", this::receivePiece);
+        com.send("PIECE");
     }
 
     /**
-     * Initialise a new game and set up anything needed to start the game
+     * Get the listener for the pieces the server sends, which the scene playing the game releases when it is left
+     * @return subscription for the piece listener
      */
-    public void initialiseGame() {
-        logger.info("Initialising game");
-        this.nextPiece = pieceQueue.poll();
-        nextPiece();
-        com.send("PIECE");
-        logger.info("Current piece: " + currentPiece);
-        logger.info("Next piece: " + nextPiece);
+    public Subscription getPieceListener() {
+        return pieceListener;
     }
 
     /**
-     * Sets a timer task to handle the pieces
+     * Carry on without the server, for when it has taken us out of the channel. The rest of the game is dealt
+     * random pieces.
      */
-    public void requestPieces() {
-        Timer timer = new Timer();
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                handlePiece();
-            }
-        }, 0, 50);
+    public void playOffline() {
+        logger.warn("No longer in the channel, dealing pieces locally");
+        pieceQueue.stop();
     }
 
-    public void handlePiece() {
-        if (count < 1) {
-            count++;
-            com.addListener(message -> {
-                if (message.startsWith("PIECE")) {
-                    String[] parts = message.split(" ");
-                    int pieceIndex = Integer.valueOf(parts[1]);
-                    logger.info("Received piece index: " + pieceIndex);
-                    Platform.runLater(() -> {
-                        spawnPiece(pieceIndex);
-                    });
-                }
-            });
-        }
+    /**
+     * Handles a piece sent by the server
+     * @param message PIECE message
+     */
+    public void receivePiece(String message) {
+        String[] parts = message.split(" ");
+        int pieceIndex = Integer.valueOf(parts[1]);
+        logger.info("Received piece index: " + pieceIndex);
+        queuePiece(pieceIndex);
     }
 
     /**
-     * Creates the piece and adds it to queue
+     * Adds a piece sent by the server to the queue
      * @param index index of the piece
-     * @return return the piece just created
      */
-    public GamePiece spawnPiece(int index) {
-        var piece = GamePiece.createPiece(index);
-        logger.info("BEFORE: " + pieceQueue.size());
-        pieceQueue.add(piece);
-        logger.info("AFTER: " + pieceQueue.size());
-        return piece;
+    public void queuePiece(int index) {
+        pieceQueue.offer(index);
+        logger.info("Pieces queued: " + pieceQueue.size());
     }
 
     /**
-     * Adds the scores depending on how many lines the user clears
-     * @param numOfLines number of lines cleared
-     * @param numOfBlocks number of blocks cleared
+     * Clears any lines and sends the new score to the server
      */
     @Override
-    protected void score(int numOfLines, int numOfBlocks) {
-        super.score(numOfLines, numOfBlocks);
+    public void afterPiece() {
+        super.afterPiece();
         com.send("SCORE " + score.get());
     }
 
@@ -124,9 +106,9 @@ public class MultiplayerGame extends Game {
      */
     @Override
     protected void updateLives() {
-        if (lives.get() > 0) {
+        if (engine.loseLife()) {
             logger.info("Life lost");
-            lives.set(lives.get() - 1);
+            lives.set(engine.getLives());
             com.send("LIVES " + lives.get());
             Multimedia.playAudio("lifelose.wav");
         } else {
@@ -140,25 +122,4 @@ public class MultiplayerGame extends Game {
         }
     }
 
-    /**
-     *Changes current piece to the next piece and reassigns nextpiece a new piece
-     */
-    public void nextPiece() {
-        logger.info("Next piece is created");
-        //Current piece becomes next piece
-        currentPiece = nextPiece;
-        //Next piece gets another piece
-        logger.info("BEFORE1: " + pieceQueue.size());
-        nextPiece = pieceQueue.poll();
-        logger.info("AFTER1: " + pieceQueue.size());
-        com.send("PIECE");
-
-        logger.info("Current piece is " + currentPiece);
-        logger.info("Next piece is " + nextPiece);
-        //If next piece occurs, call nextPiece method on currentPiece to get the next piece from nextPiece variable
-        if (nextPieceListener != null) {
-            nextPieceListener.nextPiece(currentPiece);
-        }
-    }
-
 }
@@ -5,7 +5,6 @@ import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.MouseButton;
@@ -16,22 +15,21 @@ import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Text;
-import javafx.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.component.GameBlock;
 import uk.ac.soton.comp1206.component.GameBoard;
+import uk.ac.soton.comp1206.component.Leaderboard;
 import uk.ac.soton.comp1206.component.PieceBoard;
-import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.game.GamePiece;
 import uk.ac.soton.comp1206.network.Communicator;
+import uk.ac.soton.comp1206.network.Subscription;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 import uk.ac.soton.comp1206.ui.Multimedia;
 
 import java.util.ArrayList;
 import java.util.Timer;
-import java.util.TimerTask;
 
 /**
  * Multiplayer scene, scene of the game where you can compete against other players
@@ -47,10 +45,6 @@ public class MultiplayerScene extends ChallengeScene{
      * Textfield for chat
      */
     TextField sendChat;
-    /**
-     * Timer to run tasks repeatedly
-     */
-    Timer timer;
     /**
      * Updates leaderboard repeatedly
      */
@@ -64,13 +58,21 @@ public class MultiplayerScene extends ChallengeScene{
      */
     Text leaderboardTitle;
     /**
-     * userScores, username:score
+     * Players' scores, ranked
+     */
+    Leaderboard leaderboardRows;
+    /**
+     * Number of players shown on the leaderboard at once, the rest can be scrolled to
      */
-    ArrayList<Pair<String, Pair<String, Integer>>> userScores;
+    private static final int LEADERBOARD_ROWS = 8;
     /**
      * Game variable
      */
-    private Game multiGame;
+    private MultiplayerGame multiGame;
+    /**
+     * Asks the server for scores every so often, until the game leaves the channel
+     */
+    private Subscription scoreRequests;
     /**
      * Create a new Single Player challenge scene
      *
@@ -79,7 +81,6 @@ public class MultiplayerScene extends ChallengeScene{
     public MultiplayerScene(GameWindow gameWindow, String mode) {
         super(gameWindow, mode);
         com = gameWindow.getCommunicator();
-        userScores = new ArrayList<>();
     }
 
     /**
@@ -99,11 +100,13 @@ public class MultiplayerScene extends ChallengeScene{
 
         multiGame.start();
 
-        currentPieceBoard.setPiece(multiGame.currentPiece);
-        nextPieceBoard.setPiece(multiGame.nextPiece);
+        currentPieceBoard.setPiece(multiGame.getCurrentPiece());
+        board.setGhostPiece(multiGame.getCurrentPiece());
+        nextPieceBoard.setPiece(multiGame.getNextPiece());
 
         scene.setOnKeyPressed(event -> {
             if (event.getCode().equals(KeyCode.ESCAPE)) {
+                multiGame.shutdown();
                 gameWindow.startMenu();
                 com.send("DIE");
             }
@@ -116,7 +119,9 @@ public class MultiplayerScene extends ChallengeScene{
      */
     @Override
     public void setUpGame() {
-        multiGame = new MultiplayerGame(com, 5, 5);
+        var game = new MultiplayerGame(com, 5, 5);
+        own(game.getPieceListener());
+        multiGame = game;
     }
 
     /**
@@ -125,21 +130,16 @@ public class MultiplayerScene extends ChallengeScene{
      */
     @Override
     public void nextPiece(GamePiece gp) {
-        currentPieceBoard.setPiece(multiGame.currentPiece);
-        nextPieceBoard.setPiece(multiGame.nextPiece);
+        currentPieceBoard.setPiece(multiGame.getCurrentPiece());
+        board.setGhostPiece(multiGame.getCurrentPiece());
+        nextPieceBoard.setPiece(multiGame.getNextPiece());
     }
 
     /**
      * Timer task that sends request to server for scores
      */
     public void requestScores() {
-        timer = new Timer(true);
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                com.send("SCORES");
-            }
-        }, 0, 2000);
+        scoreRequests = repeat("Score requests", 2000, () -> com.send("SCORES"));
     }
 
     /**
@@ -159,40 +159,31 @@ public class MultiplayerScene extends ChallengeScene{
      * Updates scores
      */
     public void updateScores() {
-        com.addListener(message -> {
-            if (message.startsWith("SCORES")) {
-                userScores.clear();
-                //SCORES <Player>:<Score>:<Lives|DEAD>\n<Player>:<Score>:<Lives|DEAD>\n
-                String[] components = message.split(" ");
-                //<Player>:<Score>:<Lives|DEAD>
-                String[] playerInfo = components[1].split("\n");
-                for (String player: playerInfo) {
-                    //<Player> <Score> <Lives|DEAD>
-                    String[] score = player.split(":");
-                    //Player, Lives|Dead, Scores
-                    userScores.add(new Pair<>(score[0], new Pair<>(score[2], Integer.valueOf(score[1]))));
-                    Platform.runLater(() -> updateLeaderboard());
+        listen("SCORES", message -> {
+            //SCORES <Player>:<Score>:<Lives|DEAD>\n<Player>:<Score>:<Lives|DEAD>\n
+            String[] components = message.split(" ", 2);
+            if (components.length < 2) return;
+            //<Player>:<Score>:<Lives|DEAD>
+            String[] playerInfo = components[1].split("\n");
+            var entries = new ArrayList<Leaderboard.Entry>(playerInfo.length);
+            for (String player: playerInfo) {
+                //<Player> <Score> <Lives|DEAD>
+                String[] score = player.split(":");
+                if (score.length < 3) continue;
+                int points;
+                try {
+                    points = Integer.parseInt(score[1]);
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring score line: {}", player);
+                    continue;
                 }
+                entries.add(new Leaderboard.Entry(score[0], points, score[2]));
             }
+            //The leaderboard applies the latest scores once per pulse, however many arrive
+            leaderboardRows.update(entries);
         });
     }
 
-    /**
-     * Updates leaderboard when competing against other players
-     */
-    public void updateLeaderboard() {
-        leaderboard.getChildren().clear();
-        leaderboard.getChildren().add(leaderboardTitle);
-        //Sorts scores
-        userScores.sort((a, b) -> b.getValue().getValue().compareTo(a.getValue().getValue()));
-        for (Pair<String, Pair<String, Integer>> user : userScores) {
-            logger.info("User: " + user.getKey() + " Score: " + user.getValue().getValue());
-            var userScore = new Text(user.getKey() + ": " + user.getValue().getValue());
-            userScore.getStyleClass().add("heading");
-            leaderboard.getChildren().add(userScore);
-        }
-    }
-
     /**
      * Send message on chat
      * @param message message to be sent to server
@@ -211,9 +202,7 @@ public class MultiplayerScene extends ChallengeScene{
     @Override
     public void gameOver() {
         logger.info("Game over");
-        timerBar.setWidth(0);
-        timerBar.setHeight(0);
-        timerBar.setOpacity(0);
+        hideTimer();
     }
 
     /**
@@ -232,13 +221,15 @@ public class MultiplayerScene extends ChallengeScene{
 
     /**
      * Method to rotate current piece
+     * @param rotations number of quarter turns to the right, negative to rotate left
      */
     @Override
-    public void rotate() {
+    public void rotate(int rotations) {
         logger.info("Block rotated");
         Multimedia.playAudio("rotate.wav");
-        multiGame.rotateCurrentPiece(multiGame.currentPiece);
-        currentPieceBoard.setPiece(multiGame.currentPiece);
+        multiGame.rotateCurrentPiece(rotations);
+        currentPieceBoard.setPiece(multiGame.getCurrentPiece());
+        board.setGhostPiece(multiGame.getCurrentPiece());
     }
 
     /**
@@ -248,8 +239,9 @@ public class MultiplayerScene extends ChallengeScene{
     public void swapPiece() {
         Multimedia.playAudio("pling.wav");
         multiGame.swapCurrentPiece();
-        currentPieceBoard.setPiece(multiGame.currentPiece);
-        nextPieceBoard.setPiece(multiGame.nextPiece);
+        currentPieceBoard.setPiece(multiGame.getCurrentPiece());
+        board.setGhostPiece(multiGame.getCurrentPiece());
+        nextPieceBoard.setPiece(multiGame.getNextPiece());
     }
 
     /**
@@ -280,10 +272,10 @@ public class MultiplayerScene extends ChallengeScene{
         mainPane.setTop(top);
 
         //Title
-        Image image = new Image(getClass().getResourceAsStream("/images/TetrECS.png"));
-        ImageView title = new ImageView(image);
+        ImageView title = new ImageView();
         title.setPreserveRatio(true);
         title.setFitHeight(100);
+        gameWindow.getAssets().setImage(title, "TetrECS.png");
 
         //Score
         var scoreBox = new VBox();
@@ -295,6 +287,7 @@ public class MultiplayerScene extends ChallengeScene{
         //Binds score's textProperty to the IntegerProperty saved in Game class.
         score.textProperty().bind(multiGame.score.asString());
         scoreBox.getChildren().addAll(scoreText, score);
+        showScorePops(multiGame, challengePane);
 
         //Lives
         var livesBox = new VBox();
@@ -404,10 +397,15 @@ public class MultiplayerScene extends ChallengeScene{
         chatBox.getChildren().addAll(chatTitle, chat, sendChat);
 
         //Listens for messages
-        com.addListener(msg -> {
-            if (msg.startsWith("MSG")) {
-                chat.appendText(msg.substring(4) + "\n");
-            }
+        listen("MSG", msg -> {
+            chat.appendText(msg.substring(4) + "\n");
+        });
+
+        //A game which has started cannot be joined again, so after losing the channel the game carries on alone
+        listen("PARTED", message -> {
+            multiGame.playOffline();
+            scoreRequests.release();
+            Platform.runLater(() -> chat.appendText("Lost connection to the game, playing on offline\n"));
         });
 
         //Leaderboard box
@@ -417,7 +415,8 @@ public class MultiplayerScene extends ChallengeScene{
         //Leaderboard title
         leaderboardTitle = new Text("Leaderboard");
         leaderboardTitle.getStyleClass().add("title");
-        leaderboard.getChildren().add(leaderboardTitle);
+        leaderboardRows = new Leaderboard(LEADERBOARD_ROWS);
+        leaderboard.getChildren().addAll(leaderboardTitle, leaderboardRows);
 
         right.getChildren().addAll(levelBox, multiplierBox, currentPieceBox, nextPieceBox);
         left.getChildren().addAll(leaderboard, chatBox);
@@ -1,5 +1,6 @@
 package uk.ac.soton.comp1206.scene;
 
+import javafx.application.Platform;
 import javafx.beans.property.SimpleListProperty;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -42,7 +43,7 @@ public class ScoreScene extends BaseScene{
      * Holds the score list to be imported
      */
     private ObservableList<Pair<String, Integer>> localScores;
-    private ObservableList<Pair<String, Integer>> onlineScores;
+    private final ObservableList<Pair<String, Integer>> onlineScores = FXCollections.observableArrayList();
     /**
      * ScoreList variable for local scores
      */
@@ -74,6 +75,14 @@ public class ScoreScene extends BaseScene{
     public void initialise() {
         logger.info("Initializing " + this.getClass().getName());
         Multimedia.playMusic("end.wav");
+
+        //Kept out of build, which may run in the background before the previous scene's listeners are cleared
+        listen("HISCORES", this::loadOnlineScores);
+        com.send("HISCORES");
+
+        //Asks for a name on the FX thread, the list updates itself once the new score is added
+        checkHighscore();
+
         scene.setOnKeyPressed(e -> {
             if (e.getCode() == KeyCode.ESCAPE) {
                 gameWindow.startMenu();
@@ -203,9 +212,8 @@ public class ScoreScene extends BaseScene{
             String[] parts = s.split(":");
             tempOnlineScores.add(new Pair<>(parts[0], Integer.valueOf(parts[1])));
         }
-        onlineScores = FXCollections.observableArrayList(tempOnlineScores);
-        onlineScoreList.scoresList.set(onlineScores);
-        onlineScoreList.createList();
+        //Replaced in place, so the list only redraws the rows which changed
+        Platform.runLater(() -> onlineScores.setAll(tempOnlineScores));
     }
 
 
@@ -216,14 +224,10 @@ public class ScoreScene extends BaseScene{
     public void build() {
         logger.info("Building " + this.getClass().getName());
 
-        com.addListener(this::loadOnlineScores);
-        com.send("HISCORES");
-
         localScores = FXCollections.observableArrayList(loadScores());
 
-        checkHighscore();
-
         scoreList.scoresList.set(localScores);
+        onlineScoreList.scoresList.set(onlineScores);
         scoreList.setAlignment(Pos.CENTER);
         onlineScoreList.setAlignment(Pos.CENTER);
 
@@ -275,7 +279,7 @@ public class ScoreScene extends BaseScene{
         var retry = new Text("Retry");
         retry.getStyleClass().add("menuItem");
         retry.setOnMouseClicked(event -> {
-            gameWindow.startChallenge(game1.mode);
+            gameWindow.startChallenge(game1.getMode());
         });
 
         //Main menu
@@ -0,0 +1,146 @@
+package uk.ac.soton.comp1206.server;
+
+import uk.ac.soton.comp1206.game.GamePiece;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A channel on the local server: the players in it, who is hosting, and, once a game has started, the sequence of
+ * pieces every player in it is dealt in the same order.
+ *
+ * Members are held copy-on-write, as they are read on every broadcast and only change when someone joins or leaves.
+ * Joining, leaving and starting lock the channel, so a player cannot join a game just as it starts.
+ */
+class Channel {
+
+    /**
+     * Channel name
+     */
+    final String name;
+
+    /**
+     * Players in the channel, in the order they joined
+     */
+    private final List<Player> members = new CopyOnWriteArrayList<>();
+
+    /**
+     * Player hosting the channel, who may start the game
+     */
+    private Player host;
+
+    /**
+     * Whether the game has started
+     */
+    private boolean started = false;
+
+    /**
+     * Whether the channel has been closed, having emptied
+     */
+    private boolean closed = false;
+
+    /**
+     * Pieces dealt so far in this game, shared by every player
+     */
+    private final List<Integer> pieces = new ArrayList<>();
+
+    private final Random random = new Random();
+
+    /**
+     * Create a channel
+     * @param name channel name
+     */
+    Channel(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Add a player, making them host if the channel is empty
+     * @param player the player
+     * @return false if the game has already started, or the channel has closed, so the player cannot join
+     */
+    synchronized boolean join(Player player) {
+        if (started || closed) return false;
+        if (members.isEmpty()) host = player;
+        members.add(player);
+        player.channel = this;
+        return true;
+    }
+
+    /**
+     * Remove a player, handing hosting on if they were host
+     * @param player the player
+     * @return the new host if hosting passed to someone else, otherwise null
+     */
+    synchronized Player leave(Player player) {
+        members.remove(player);
+        player.channel = null;
+        if (player != host) return null;
+        host = members.isEmpty() ? null : members.get(0);
+        return host;
+    }
+
+    /**
+     * Start the game, if the given player is host
+     * @param player player asking to start
+     * @return true if the game started
+     */
+    synchronized boolean start(Player player) {
+        if (player != host) return false;
+        started = true;
+        pieces.clear();
+        for (var member : members) {
+            member.reset();
+        }
+        return true;
+    }
+
+    /**
+     * Deal a player the next piece in the sequence, adding to the sequence if they are the first to reach it
+     * @param player the player
+     * @return piece number
+     */
+    synchronized int nextPiece(Player player) {
+        while (pieces.size() <= player.nextPiece) {
+            pieces.add(random.nextInt(GamePiece.PIECES));
+        }
+        return pieces.get(player.nextPiece++);
+    }
+
+    /**
+     * Close the channel if nobody is left in it, so nobody can join it as it is removed
+     * @return true if it was closed
+     */
+    synchronized boolean closeIfEmpty() {
+        if (members.isEmpty()) closed = true;
+        return closed;
+    }
+
+    /**
+     * Whether the game in the channel has started
+     * @return true if started
+     */
+    synchronized boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Get the players in the channel
+     * @return players, in the order they joined
+     */
+    List<Player> getMembers() {
+        return members;
+    }
+
+    /**
+     * Send a message to everyone in the channel
+     * @param message the message
+     */
+    void broadcast(String message) {
+        for (var member : members) {
+            member.send(message);
+        }
+    }
+}
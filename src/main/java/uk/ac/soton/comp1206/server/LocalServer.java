@@ -0,0 +1,459 @@
+package uk.ac.soton.comp1206.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Local Server speaks the same text protocol over web sockets as the TetrECS server, so the game can be played
+ * without it: on one machine, across a LAN, or against many simulated clients when load testing.
+ *
+ * Each connection is served by a thread of its own from a pool, which reads the player's messages and answers them.
+ * Messages to a player are queued and written from a second pool, so a player who stops reading cannot hold up the
+ * others.
+ * Channels are kept in a concurrent map and players in a concurrent set, so connections share them without a lock
+ * around the whole server.
+ *
+ * It can run inside the game, by starting it with -Dtetrecs.server=local, or on its own through main.
+ */
+public class LocalServer {
+
+    private static final Logger logger = LogManager.getLogger(LocalServer.class);
+
+    /**
+     * Number of high scores kept and reported
+     */
+    private static final int HISCORES = 10;
+
+    /**
+     * Channels by name
+     */
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+
+    /**
+     * Every connected player
+     */
+    private final Set<Player> players = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Online high scores, best first
+     */
+    private final List<HiScore> hiscores = new ArrayList<>();
+
+    /**
+     * Numbers guest nicknames
+     */
+    private final AtomicInteger guests = new AtomicInteger();
+
+    /**
+     * Serves connections, one thread each
+     */
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        var thread = new Thread(runnable, "Local server connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Writes the messages queued for each player
+     */
+    private final ExecutorService writers = Executors.newCachedThreadPool(runnable -> {
+        var thread = new Thread(runnable, "Local server writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ServerSocket serverSocket;
+
+    /**
+     * A high score
+     * @param name player name
+     * @param score score
+     */
+    private record HiScore(String name, int score) {}
+
+    /**
+     * Create a server listening on the given port. Call start to begin accepting connections.
+     * @param port port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be listened on
+     */
+    public LocalServer(int port) throws IOException {
+        serverSocket = new ServerSocket(port);
+        //Starts with the same placeholder scores as the local high scores, so the list is never empty
+        for (int score : new int[]{1000, 500, 250, 200, 180, 150, 100, 50, 20}) {
+            hiscores.add(new HiScore("Guest", score));
+        }
+    }
+
+    /**
+     * Run a server on its own, for playing across a LAN or load testing
+     * @param args port to listen on, 9700 if not given
+     * @throws IOException if the port cannot be listened on
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 9700;
+        var server = new LocalServer(port);
+        server.accept();
+    }
+
+    /**
+     * Start accepting connections on a background thread
+     * @return this server
+     */
+    public LocalServer start() {
+        var acceptor = new Thread(this::accept, "Local server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return this;
+    }
+
+    /**
+     * Stop accepting connections and close every connection open
+     */
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            logger.error("Unable to close local server", e);
+        }
+        for (var player : players) {
+            player.disconnect();
+        }
+        connections.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    /**
+     * Get the port the server is listening on
+     * @return port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accept connections until the server is stopped, handing each to a thread of its own
+     */
+    private void accept() {
+        logger.info("Local server listening on port {}", getPort());
+        while (!serverSocket.isClosed()) {
+            try {
+                var socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.execute(() -> serve(socket));
+            } catch (SocketException e) {
+                //Closed by stop
+                break;
+            } catch (IOException e) {
+                logger.error("Unable to accept connection", e);
+            }
+        }
+        logger.info("Local server stopped");
+    }
+
+    /**
+     * Serve one connection, on its own thread, until it closes
+     * @param socket the connection
+     */
+    private void serve(Socket socket) {
+        WebSocketConnection connection;
+        try {
+            connection = WebSocketConnection.accept(socket);
+        } catch (IOException e) {
+            logger.warn("Handshake failed: {}", e.getMessage());
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                //Nothing more to do
+            }
+            return;
+        }
+
+        var player = new Player(connection, "Guest" + guests.incrementAndGet(), writers);
+        players.add(player);
+        logger.info("{} connected from {}", player.nickname, connection.getRemoteAddress());
+        try {
+            String message;
+            while ((message = connection.read()) != null) {
+                handle(player, message);
+            }
+        } catch (IOException e) {
+            logger.info("{} dropped: {}", player.nickname, e.getMessage());
+        } finally {
+            part(player);
+            players.remove(player);
+            connection.close();
+            logger.info("{} disconnected", player.nickname);
+        }
+    }
+
+    /**
+     * Answer one message from a player
+     * @param player the player
+     * @param message the message
+     */
+    void handle(Player player, String message) {
+        int space = message.indexOf(' ');
+        var command = space < 0 ? message.trim() : message.substring(0, space);
+        var argument = space < 0 ? "" : message.substring(space + 1).trim();
+
+        switch (command) {
+            case "LIST" -> player.send("CHANNELS " + String.join("\n", channels.keySet()));
+            case "CREATE" -> create(player, argument);
+            case "JOIN" -> join(player, argument);
+            case "PART" -> {
+                if (player.channel == null) {
+                    player.send("ERROR You are not in a channel");
+                } else {
+                    part(player);
+                    player.send("PARTED");
+                }
+            }
+            case "NICK" -> nick(player, argument);
+            case "USERS" -> {
+                var channel = player.channel;
+                if (channel == null) {
+                    player.send("ERROR You are not in a channel");
+                } else {
+                    player.send(users(channel));
+                }
+            }
+            case "MSG" -> {
+                var channel = player.channel;
+                if (channel == null) {
+                    player.send("ERROR You are not in a channel");
+                } else {
+                    channel.broadcast("MSG " + player.nickname + ":" + argument);
+                }
+            }
+            case "START" -> {
+                var channel = player.channel;
+                if (channel == null || !channel.start(player)) {
+                    player.send("ERROR You are not the host of a channel");
+                } else {
+                    logger.info("Game started in {}", channel.name);
+                    channel.broadcast("START");
+                }
+            }
+            case "PIECE" -> {
+                var channel = player.channel;
+                if (channel == null) {
+                    player.send("ERROR You are not in a channel");
+                } else {
+                    player.send("PIECE " + channel.nextPiece(player));
+                }
+            }
+            case "SCORE" -> {
+                Integer score = parse(argument);
+                if (score == null) {
+                    player.send("ERROR Invalid score");
+                } else {
+                    player.score = score;
+                }
+            }
+            case "LIVES" -> {
+                Integer lives = parse(argument);
+                if (lives == null) {
+                    player.send("ERROR Invalid lives");
+                } else {
+                    player.lives = lives;
+                }
+            }
+            case "DIE" -> player.dead = true;
+            case "SCORES" -> {
+                var channel = player.channel;
+                if (channel == null) {
+                    player.send("ERROR You are not in a channel");
+                } else {
+                    var standings = new ArrayList<String>();
+                    for (var member : channel.getMembers()) {
+                        standings.add(member.standing());
+                    }
+                    player.send("SCORES " + String.join("\n", standings));
+                }
+            }
+            case "HISCORES" -> player.send("HISCORES " + hiscores());
+            case "HISCORE" -> hiscore(player, argument);
+            default -> player.send("ERROR Unknown command " + command);
+        }
+    }
+
+    /**
+     * Create a channel and join it as host
+     * @param player the player
+     * @param name channel name
+     */
+    private void create(Player player, String name) {
+        if (player.channel != null) {
+            player.send("ERROR You are already in a channel");
+            return;
+        }
+        if (!validName(name)) {
+            player.send("ERROR Invalid channel name");
+            return;
+        }
+        var channel = new Channel(name);
+        if (channels.putIfAbsent(name, channel) != null) {
+            player.send("ERROR Channel already exists");
+            return;
+        }
+        channel.join(player);
+        logger.info("{} created {}", player.nickname, name);
+        player.send("JOIN " + name);
+        player.send("NICK " + player.nickname);
+        player.send("HOST");
+        channel.broadcast(users(channel));
+    }
+
+    /**
+     * Join an existing channel
+     * @param player the player
+     * @param name channel name
+     */
+    private void join(Player player, String name) {
+        if (player.channel != null) {
+            player.send("ERROR You are already in a channel");
+            return;
+        }
+        var channel = channels.get(name);
+        if (channel == null) {
+            player.send("ERROR Channel does not exist");
+            return;
+        }
+        if (!channel.join(player)) {
+            player.send(channel.isStarted() ? "ERROR Game has already started" : "ERROR Channel does not exist");
+            return;
+        }
+        player.send("JOIN " + name);
+        player.send("NICK " + player.nickname);
+        channel.broadcast(users(channel));
+    }
+
+    /**
+     * Take a player out of their channel, if they are in one, removing the channel once it is empty
+     * @param player the player
+     */
+    private void part(Player player) {
+        var channel = player.channel;
+        if (channel == null) return;
+        var host = channel.leave(player);
+        if (channel.closeIfEmpty()) {
+            channels.remove(channel.name, channel);
+            logger.info("Channel {} closed", channel.name);
+            return;
+        }
+        if (host != null) host.send("HOST");
+        channel.broadcast(users(channel));
+    }
+
+    /**
+     * Change a player's nickname, telling the rest of their channel
+     * @param player the player
+     * @param nickname new nickname
+     */
+    private void nick(Player player, String nickname) {
+        if (!validName(nickname) || nickname.contains(":")) {
+            player.send("ERROR Invalid nickname");
+            return;
+        }
+        var previous = player.nickname;
+        player.nickname = nickname;
+        player.send("NICK " + nickname);
+        var channel = player.channel;
+        if (channel == null) return;
+        for (var member : channel.getMembers()) {
+            if (member != player) member.send("NICK " + previous + ":" + nickname);
+        }
+        channel.broadcast(users(channel));
+    }
+
+    /**
+     * Record a high score
+     * @param player the player
+     * @param argument name:score
+     */
+    private void hiscore(Player player, String argument) {
+        var parts = argument.split(":");
+        Integer score = parts.length == 2 ? parse(parts[1]) : null;
+        if (score == null || !validName(parts[0])) {
+            player.send("ERROR Invalid high score");
+            return;
+        }
+        synchronized (hiscores) {
+            hiscores.add(new HiScore(parts[0], score));
+            hiscores.sort(Comparator.comparingInt(HiScore::score).reversed());
+            while (hiscores.size() > HISCORES) hiscores.remove(hiscores.size() - 1);
+        }
+        player.send("NEWSCORE " + parts[0] + ":" + score);
+    }
+
+    /**
+     * List the high scores
+     * @return name:score lines, best first
+     */
+    private String hiscores() {
+        var lines = new ArrayList<String>();
+        synchronized (hiscores) {
+            for (var hiscore : hiscores) {
+                lines.add(hiscore.name() + ":" + hiscore.score());
+            }
+        }
+        return String.join("\n", lines);
+    }
+
+    /**
+     * List the players in a channel
+     * @param channel the channel
+     * @return USERS message
+     */
+    private static String users(Channel channel) {
+        var names = new ArrayList<String>();
+        for (var member : channel.getMembers()) {
+            names.add(member.nickname);
+        }
+        return "USERS " + String.join("\n", names);
+    }
+
+    /**
+     * Check a channel name or nickname can be sent in the protocol
+     * @param name the name
+     * @return true if it is not empty and fits on one line
+     */
+    private static boolean validName(String name) {
+        return !name.isBlank() && name.indexOf('\n') < 0;
+    }
+
+    /**
+     * Read a number sent by a player
+     * @param text the number
+     * @return the number, or null if it is not one
+     */
+    private static Integer parse(String text) {
+        try {
+            return Integer.valueOf(text.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Count the players connected
+     * @return number of players
+     */
+    public int getPlayerCount() {
+        return players.size();
+    }
+}
@@ -0,0 +1,154 @@
+package uk.ac.soton.comp1206.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A player connected to the local server. The player's own connection thread changes its state; other players'
+ * threads read it when reporting scores, so every field they read is volatile.
+ *
+ * Messages to the player are queued and written by a task on the server's writer pool, one at a time and in order, so
+ * a player whose connection is slow holds up only their own messages, not every player broadcasting to them. A player
+ * who falls so far behind that the queue fills is disconnected.
+ */
+class Player {
+
+    private static final Logger logger = LogManager.getLogger(Player.class);
+
+    /**
+     * Lives a player starts a game with
+     */
+    static final int LIVES = 3;
+
+    /**
+     * Most messages waiting to be written to a player before they are disconnected
+     */
+    private static final int OUTBOUND = 256;
+
+    private final WebSocketConnection connection;
+
+    /**
+     * Runs the tasks which write queued messages
+     */
+    private final Executor writers;
+
+    /**
+     * Messages waiting to be written, oldest first
+     */
+    private final ArrayBlockingQueue<String> outbound = new ArrayBlockingQueue<>(OUTBOUND);
+
+    /**
+     * Whether a task is writing the queued messages
+     */
+    private final AtomicBoolean writing = new AtomicBoolean(false);
+
+    /**
+     * Name shown to other players
+     */
+    volatile String nickname;
+
+    /**
+     * Channel the player is in, or null
+     */
+    volatile Channel channel;
+
+    volatile int score = 0;
+    volatile int lives = LIVES;
+    volatile boolean dead = false;
+
+    /**
+     * Position in the channel's piece sequence of the next piece to deal
+     */
+    int nextPiece = 0;
+
+    /**
+     * Create a player
+     * @param connection the player's connection
+     * @param nickname starting nickname
+     * @param writers runs the tasks which write messages to the player
+     */
+    Player(WebSocketConnection connection, String nickname, Executor writers) {
+        this.connection = connection;
+        this.nickname = nickname;
+        this.writers = writers;
+    }
+
+    /**
+     * Start a new game, keeping the nickname and channel
+     */
+    void reset() {
+        score = 0;
+        lives = LIVES;
+        dead = false;
+        nextPiece = 0;
+    }
+
+    /**
+     * Queue a message to the player, never waiting on their connection. A player whose connection has failed is left
+     * for its own thread to remove.
+     * @param message the message
+     */
+    void send(String message) {
+        if (!outbound.offer(message)) {
+            logger.warn("{} is not keeping up, disconnecting", nickname);
+            outbound.clear();
+            //Their writer may be stuck sending, so the socket is closed under it rather than waiting for it
+            connection.abort();
+            return;
+        }
+        startWriting();
+    }
+
+    /**
+     * Start a task writing the queued messages, unless one is already running
+     */
+    private void startWriting() {
+        if (!writing.compareAndSet(false, true)) return;
+        try {
+            writers.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            //The server has stopped
+            writing.set(false);
+        }
+    }
+
+    /**
+     * Write the queued messages, on the writer pool
+     */
+    private void flush() {
+        try {
+            String message;
+            while ((message = outbound.poll()) != null) {
+                connection.send(message);
+            }
+        } catch (IOException e) {
+            logger.debug("Unable to send to {}: {}", nickname, e.getMessage());
+            outbound.clear();
+        } finally {
+            writing.set(false);
+        }
+        //A message queued after the last poll, but before writing was cleared, would otherwise wait for the next one
+        if (!outbound.isEmpty()) startWriting();
+    }
+
+    /**
+     * Close the player's connection
+     */
+    void disconnect() {
+        connection.close();
+    }
+
+    /**
+     * Describe the player's standing for SCORES
+     * @return name:score:lives, or name:score:DEAD
+     */
+    String standing() {
+        return nickname + ":" + score + ":" + (dead ? "DEAD" : String.valueOf(lives));
+    }
+}
@@ -0,0 +1,256 @@
+package uk.ac.soton.comp1206.server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * The server side of one web socket connection, made over a plain socket. It does just enough of RFC 6455 for the
+ * game: the opening handshake, text messages (including fragmented ones), ping and close. Reading is done by the
+ * connection's own thread; sending can be done from any thread.
+ */
+class WebSocketConnection {
+
+    /**
+     * Added to the client's key to prove the server understood the handshake
+     */
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    /**
+     * Largest message accepted, in bytes
+     */
+    private static final int MAX_MESSAGE = 1 << 20;
+
+    private static final int CONTINUATION = 0x0;
+    private static final int TEXT = 0x1;
+    private static final int BINARY = 0x2;
+    private static final int CLOSE = 0x8;
+    private static final int PING = 0x9;
+    private static final int PONG = 0xA;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+
+    /**
+     * Whether a close frame has been sent
+     */
+    private boolean closed = false;
+
+    /**
+     * Create a connection over a socket which has completed the handshake
+     * @param socket the socket
+     * @param in buffered input, positioned after the handshake
+     * @throws IOException if the socket cannot be written to
+     */
+    private WebSocketConnection(Socket socket, InputStream in) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(in);
+        this.out = socket.getOutputStream();
+    }
+
+    /**
+     * Carry out the opening handshake on a newly accepted socket
+     * @param socket the socket
+     * @return the connection
+     * @throws IOException if the request is not a web socket upgrade, or the socket fails
+     */
+    static WebSocketConnection accept(Socket socket) throws IOException {
+        var in = new BufferedInputStream(socket.getInputStream());
+        String key = null;
+        String line = readLine(in);
+        if (line == null || !line.startsWith("GET ")) throw new IOException("Not a web socket request: " + line);
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            var name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            if (name.equals("sec-websocket-key")) key = line.substring(colon + 1).trim();
+        }
+        if (key == null) throw new IOException("Web socket request has no key");
+
+        var response = "HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n";
+        var out = socket.getOutputStream();
+        out.write(response.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return new WebSocketConnection(socket, in);
+    }
+
+    /**
+     * Work out the accept header for a client's key
+     * @param key the client's key
+     * @return base 64 SHA-1 of the key and GUID
+     */
+    private static String acceptKey(String key) {
+        try {
+            var sha1 = MessageDigest.getInstance("SHA-1");
+            return Base64.getEncoder().encodeToString(sha1.digest((key + GUID).getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    /**
+     * Read one line of the HTTP request, without its line ending
+     * @param in input
+     * @return the line, or null at the end of the stream
+     * @throws IOException if reading fails
+     */
+    private static String readLine(InputStream in) throws IOException {
+        var line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') return line.toString();
+            if (c != '\r') line.append((char) c);
+            if (line.length() > 8192) throw new IOException("Request line too long");
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    /**
+     * Wait for the next text message, answering pings along the way
+     * @return the message, or null once the client has closed the connection
+     * @throws IOException if the connection fails or breaks the protocol
+     */
+    String read() throws IOException {
+        var message = new ByteArrayOutputStream();
+        boolean inMessage = false;
+        while (true) {
+            int first;
+            try {
+                first = in.readUnsignedByte();
+            } catch (EOFException e) {
+                return null;
+            }
+            boolean fin = (first & 0x80) != 0;
+            int opcode = first & 0x0F;
+            int second = in.readUnsignedByte();
+            boolean masked = (second & 0x80) != 0;
+            long length = second & 0x7F;
+            if (length == 126) {
+                length = in.readUnsignedShort();
+            } else if (length == 127) {
+                length = in.readLong();
+            }
+            if (!masked) throw new IOException("Client frames must be masked");
+            //A 64 bit length with its top bit set reads as negative
+            if (length < 0) throw new IOException("Invalid frame length");
+            if (length > MAX_MESSAGE || message.size() + length > MAX_MESSAGE) throw new IOException("Message too large");
+
+            var mask = new byte[4];
+            in.readFully(mask);
+            var payload = new byte[(int) length];
+            in.readFully(payload);
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] ^= mask[i & 3];
+            }
+
+            switch (opcode) {
+                case TEXT, BINARY, CONTINUATION -> {
+                    if (opcode != CONTINUATION && inMessage) throw new IOException("Message interrupted");
+                    if (opcode == CONTINUATION && !inMessage) throw new IOException("Continuation without a message");
+                    message.write(payload);
+                    inMessage = !fin;
+                    if (fin) return message.toString(StandardCharsets.UTF_8);
+                }
+                case PING -> sendFrame(PONG, payload);
+                case PONG -> {}
+                case CLOSE -> {
+                    sendFrame(CLOSE, payload.length >= 2 ? new byte[]{payload[0], payload[1]} : new byte[0]);
+                    return null;
+                }
+                default -> throw new IOException("Unknown opcode " + opcode);
+            }
+        }
+    }
+
+    /**
+     * Send a text message. Safe to call from any thread.
+     * @param message the message
+     * @throws IOException if the connection fails
+     */
+    void send(String message) throws IOException {
+        sendFrame(TEXT, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Send one unfragmented, unmasked frame
+     * @param opcode frame type
+     * @param payload frame contents
+     * @throws IOException if the connection fails
+     */
+    private synchronized void sendFrame(int opcode, byte[] payload) throws IOException {
+        if (closed) return;
+        if (opcode == CLOSE) closed = true;
+        var header = new byte[10];
+        int size;
+        header[0] = (byte) (0x80 | opcode);
+        if (payload.length < 126) {
+            header[1] = (byte) payload.length;
+            size = 2;
+        } else if (payload.length < 65536) {
+            header[1] = 126;
+            header[2] = (byte) (payload.length >> 8);
+            header[3] = (byte) payload.length;
+            size = 4;
+        } else {
+            header[1] = 127;
+            long length = payload.length;
+            for (int i = 0; i < 8; i++) {
+                header[2 + i] = (byte) (length >> (56 - 8 * i));
+            }
+            size = 10;
+        }
+        out.write(header, 0, size);
+        out.write(payload);
+        out.flush();
+    }
+
+    /**
+     * Close the connection, telling the client first if it is still there
+     */
+    void close() {
+        try {
+            sendFrame(CLOSE, new byte[]{0x03, (byte) 0xE8});
+        } catch (IOException ignored) {
+            //Already gone
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            //Nothing more to do
+        }
+    }
+
+    /**
+     * Close the socket straight away, without a close frame, for a client which has stopped reading. Unlike close,
+     * this does not wait for a send in progress, which it makes fail instead.
+     */
+    void abort() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            //Nothing more to do
+        }
+    }
+
+    /**
+     * Get where the client is connecting from
+     * @return remote address
+     */
+    String getRemoteAddress() {
+        return String.valueOf(socket.getRemoteSocketAddress());
+    }
+}
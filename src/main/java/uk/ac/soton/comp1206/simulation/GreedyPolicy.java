@@ -0,0 +1,67 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.Evaluation;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+import java.util.SplittableRandom;
+
+/**
+ * Plays whichever placement of the current or next piece clears the most lines, breaking ties by keeping the most
+ * blocks next to each other, a stand in for a reasonably good player.
+ */
+public class GreedyPolicy implements PlacementPolicy {
+
+    /**
+     * Play the best placement of the current piece, swapping with the next piece if that is better
+     * @param engine the game being played
+     * @param random random stream belonging to the worker playing this game, used to break ties
+     * @return true if a piece was played, false if neither piece fits
+     */
+    @Override
+    public boolean playTurn(GameEngine engine, SplittableRandom random) {
+        var grid = engine.getGrid();
+        var masks = grid.getPlacementMasks();
+        long occupancy = grid.getOccupancy();
+        int cols = engine.getCols();
+        int cells = cols * engine.getRows();
+
+        int bestScore = Integer.MIN_VALUE;
+        boolean bestSwap = false;
+        int bestRotation = 0;
+        int bestCell = -1;
+        int ties = 0;
+
+        for (int swap = 0; swap < 2; swap++) {
+            GamePiece piece = swap == 0 ? engine.getCurrentPiece() : engine.getNextPiece();
+            for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                for (int cell = 0; cell < cells; cell++) {
+                    int x = cell % cols;
+                    int y = cell / cols;
+                    if (!masks.canPlay(occupancy, piece.getIndex(), rotation, x, y)) continue;
+                    long placed = occupancy | masks.getMask(piece.getIndex(), rotation, x, y);
+                    int score = Evaluation.score(masks, placed);
+                    if (score > bestScore) {
+                        bestScore = score;
+                        ties = 1;
+                    } else if (score == bestScore) {
+                        //Reservoir sample between equally good placements
+                        ties++;
+                        if (random.nextInt(ties) != 0) continue;
+                    } else {
+                        continue;
+                    }
+                    bestSwap = swap == 1;
+                    bestRotation = rotation;
+                    bestCell = cell;
+                }
+            }
+        }
+
+        if (bestCell < 0) return false;
+        if (bestSwap) engine.swapCurrentPiece();
+        engine.rotateCurrentPiece(bestRotation - engine.getCurrentPiece().getRotation());
+        engine.play(bestCell % cols, bestCell / cols);
+        return true;
+    }
+}
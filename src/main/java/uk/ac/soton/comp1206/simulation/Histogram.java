@@ -0,0 +1,173 @@
+package uk.ac.soton.comp1206.simulation;
+
+import java.util.Arrays;
+
+/**
+ * A Histogram counts values in fixed width buckets, growing as larger values are added. It keeps the exact count, sum,
+ * minimum and maximum, so the mean is exact and percentiles are accurate to one bucket width.
+ *
+ * Histograms are not thread safe. Each simulation worker fills its own and they are merged once the workers finish.
+ */
+public class Histogram {
+
+    /**
+     * Width of each bucket
+     */
+    private final long bucketWidth;
+
+    /**
+     * Number of values in each bucket
+     */
+    private long[] buckets = new long[16];
+
+    /**
+     * Number of values added
+     */
+    private long count = 0;
+
+    /**
+     * Sum of the values added
+     */
+    private long sum = 0;
+
+    /**
+     * Smallest value added
+     */
+    private long min = Long.MAX_VALUE;
+
+    /**
+     * Largest value added
+     */
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * Create an empty histogram
+     * @param bucketWidth width of each bucket, at least 1
+     */
+    public Histogram(long bucketWidth) {
+        if (bucketWidth < 1) throw new IllegalArgumentException("Bucket width must be at least 1: " + bucketWidth);
+        this.bucketWidth = bucketWidth;
+    }
+
+    /**
+     * Add a value
+     * @param value value to add, must not be negative
+     */
+    public void add(long value) {
+        if (value < 0) throw new IllegalArgumentException("Histogram values must not be negative: " + value);
+        int bucket = (int) (value / bucketWidth);
+        if (bucket >= buckets.length) {
+            buckets = Arrays.copyOf(buckets, Math.max(bucket + 1, buckets.length * 2));
+        }
+        buckets[bucket]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add every value from another histogram with the same bucket width into this one
+     * @param other histogram to merge in
+     */
+    public void merge(Histogram other) {
+        if (other.bucketWidth != bucketWidth) {
+            throw new IllegalArgumentException("Cannot merge histograms with different bucket widths");
+        }
+        if (other.buckets.length > buckets.length) {
+            buckets = Arrays.copyOf(buckets, other.buckets.length);
+        }
+        for (int i = 0; i < other.buckets.length; i++) {
+            buckets[i] += other.buckets[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Estimate a percentile, as the upper edge of the bucket it falls in clamped to the largest value seen
+     * @param percentile percentile between 0 and 100
+     * @return estimated value, or 0 if the histogram is empty
+     */
+    public long percentile(double percentile) {
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank && seen > 0) {
+                return Math.max(min, Math.min(max, (i + 1) * bucketWidth - 1));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Get the number of values added
+     * @return count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the mean of the values added
+     * @return mean, or 0 if the histogram is empty
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Get the smallest value added
+     * @return minimum, or 0 if the histogram is empty
+     */
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * Get the largest value added
+     * @return maximum, or 0 if the histogram is empty
+     */
+    public long getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    /**
+     * Get the width of each bucket
+     * @return bucket width
+     */
+    public long getBucketWidth() {
+        return bucketWidth;
+    }
+
+    /**
+     * Get the number of values in a bucket
+     * @param bucket bucket index, holding values from bucket * width up to the next bucket
+     * @return count in the bucket
+     */
+    public long getBucket(int bucket) {
+        return bucket < buckets.length ? buckets[bucket] : 0;
+    }
+
+    /**
+     * Get the number of buckets up to and including the last one holding a value
+     * @return number of buckets in use
+     */
+    public int getBucketCount() {
+        return count == 0 ? 0 : (int) (max / bucketWidth) + 1;
+    }
+
+    /**
+     * Summarise the histogram on one line
+     * @return mean, minimum, percentiles and maximum
+     */
+    @Override
+    public String toString() {
+        return String.format("mean %.1f, min %d, p50 %d, p90 %d, p99 %d, max %d",
+                getMean(), getMin(), percentile(50), percentile(90), percentile(99), getMax());
+    }
+}
@@ -0,0 +1,20 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+
+import java.util.SplittableRandom;
+
+/**
+ * A Placement Policy decides how a simulated player plays each turn. It may rotate or swap the current piece and then
+ * play it, or pass, in which case the turn times out as if the player had not placed anything.
+ */
+public interface PlacementPolicy {
+
+    /**
+     * Play the current piece of the given game
+     * @param engine the game being played
+     * @param random random stream belonging to the worker playing this game
+     * @return true if a piece was played, false if the turn should time out
+     */
+    boolean playTurn(GameEngine engine, SplittableRandom random);
+}
@@ -0,0 +1,45 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+import java.util.SplittableRandom;
+
+/**
+ * Plays the current piece in a random rotation at a random legal position, a stand in for a player who places pieces
+ * wherever they fit.
+ */
+public class RandomPolicy implements PlacementPolicy {
+
+    /**
+     * Play the current piece at a random legal position
+     * @param engine the game being played
+     * @param random random stream belonging to the worker playing this game
+     * @return true if a piece was played, false if it fits nowhere
+     */
+    @Override
+    public boolean playTurn(GameEngine engine, SplittableRandom random) {
+        var masks = engine.getGrid().getPlacementMasks();
+        long occupancy = engine.getGrid().getOccupancy();
+        int cells = engine.getCols() * engine.getRows();
+        var piece = engine.getCurrentPiece();
+
+        //Start from a random rotation and cell and take the first legal placement after it
+        int startRotation = random.nextInt(GamePiece.ROTATIONS);
+        int startCell = random.nextInt(cells);
+        for (int r = 0; r < GamePiece.ROTATIONS; r++) {
+            int rotation = (startRotation + r) % GamePiece.ROTATIONS;
+            for (int c = 0; c < cells; c++) {
+                int cell = (startCell + c) % cells;
+                int x = cell % engine.getCols();
+                int y = cell / engine.getCols();
+                if (masks.canPlay(occupancy, piece.getIndex(), rotation, x, y)) {
+                    engine.rotateCurrentPiece(rotation - piece.getRotation());
+                    engine.play(x, y);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,197 @@
+package uk.ac.soton.comp1206.simulation;
+
+/**
+ * The Simulation Result collects the outcome of a batch of simulated games: the distributions of score, level, lines
+ * cleared and game length, and the totals needed to work out throughput.
+ *
+ * Game length is recorded both in turns and in simulated time, the sum of the timer delays and thinking time over the
+ * game, which is what the timer delay of each mode actually changes.
+ */
+public class SimulationResult {
+
+    /**
+     * Final scores
+     */
+    private final Histogram scores = new Histogram(100);
+
+    /**
+     * Final levels
+     */
+    private final Histogram levels = new Histogram(1);
+
+    /**
+     * Lines cleared in each game
+     */
+    private final Histogram lines = new Histogram(1);
+
+    /**
+     * Number of turns in each game, pieces played plus timeouts
+     */
+    private final Histogram turns = new Histogram(5);
+
+    /**
+     * Simulated length of each game in seconds
+     */
+    private final Histogram durations = new Histogram(10);
+
+    /**
+     * Number of games which hit the turn limit before ending
+     */
+    private long unfinished = 0;
+
+    /**
+     * Total pieces played over every game
+     */
+    private long placements = 0;
+
+    /**
+     * Wall clock time the batch took in nanoseconds, set once the whole batch has finished
+     */
+    private long elapsedNanos = 0;
+
+    /**
+     * Record a finished game
+     * @param score final score
+     * @param level final level
+     * @param linesCleared lines cleared
+     * @param turnCount number of turns
+     * @param piecesPlayed pieces played
+     * @param simulatedMillis simulated length of the game in milliseconds
+     * @param finished false if the game was stopped at the turn limit
+     */
+    public void addGame(int score, int level, int linesCleared, int turnCount, int piecesPlayed, long simulatedMillis,
+                        boolean finished) {
+        scores.add(score);
+        levels.add(level);
+        lines.add(linesCleared);
+        turns.add(turnCount);
+        durations.add(simulatedMillis / 1000);
+        placements += piecesPlayed;
+        if (!finished) unfinished++;
+    }
+
+    /**
+     * Add every game from another result into this one
+     * @param other result to merge in
+     */
+    public void merge(SimulationResult other) {
+        scores.merge(other.scores);
+        levels.merge(other.levels);
+        lines.merge(other.lines);
+        turns.merge(other.turns);
+        durations.merge(other.durations);
+        placements += other.placements;
+        unfinished += other.unfinished;
+    }
+
+    /**
+     * Set how long the batch took to run
+     * @param elapsedNanos wall clock time in nanoseconds
+     */
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Get the number of games simulated
+     * @return games
+     */
+    public long getGames() {
+        return scores.getCount();
+    }
+
+    /**
+     * Get the distribution of final scores
+     * @return scores
+     */
+    public Histogram getScores() {
+        return scores;
+    }
+
+    /**
+     * Get the distribution of final levels
+     * @return levels
+     */
+    public Histogram getLevels() {
+        return levels;
+    }
+
+    /**
+     * Get the distribution of lines cleared per game
+     * @return lines
+     */
+    public Histogram getLines() {
+        return lines;
+    }
+
+    /**
+     * Get the distribution of turns per game
+     * @return turns
+     */
+    public Histogram getTurns() {
+        return turns;
+    }
+
+    /**
+     * Get the distribution of simulated game length in seconds
+     * @return durations
+     */
+    public Histogram getDurations() {
+        return durations;
+    }
+
+    /**
+     * Get the number of games stopped at the turn limit
+     * @return unfinished games
+     */
+    public long getUnfinished() {
+        return unfinished;
+    }
+
+    /**
+     * Get the total number of pieces played
+     * @return placements
+     */
+    public long getPlacements() {
+        return placements;
+    }
+
+    /**
+     * Get how long the batch took to run
+     * @return wall clock time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Get the number of games simulated per second of wall clock time
+     * @return games per second
+     */
+    public double getGamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : getGames() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Get the number of pieces played per second of wall clock time
+     * @return placements per second
+     */
+    public double getPlacementsPerSecond() {
+        return elapsedNanos == 0 ? 0 : placements * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Summarise the result over several lines
+     * @return summary
+     */
+    @Override
+    public String toString() {
+        return String.format("%d games (%d unfinished) in %.1f ms, %.0f games/s, %.0f placements/s%n",
+                getGames(), unfinished, elapsedNanos / 1e6, getGamesPerSecond(), getPlacementsPerSecond())
+                + "  score:    " + scores + System.lineSeparator()
+                + "  level:    " + levels + System.lineSeparator()
+                + "  lines:    " + lines + System.lineSeparator()
+                + "  turns:    " + turns + System.lineSeparator()
+                + "  length s: " + durations;
+    }
+}
@@ -0,0 +1,230 @@
+package uk.ac.soton.comp1206.simulation;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.RandomPieceSource;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The Simulator plays large numbers of headless games with a Placement Policy standing in for the player, to see how
+ * the rules behave: the spread of scores, levels and lines, how long games last and how the timer delay of each mode
+ * changes that.
+ *
+ * Games are shared out over a fork/join pool. Every task splits its own random stream before forking, so each game
+ * gets the same stream however the work is scheduled and a run with the same seed always gives the same result, on any
+ * number of threads. Each worker fills its own result and results are only merged as tasks join.
+ *
+ * Time is simulated rather than waited for. Each turn the player thinks for a random time, up to twice the mean
+ * thinking time; if that is longer than the timer delay the turn times out and a life is lost, exactly as the game loop
+ * would, otherwise the policy plays the piece.
+ */
+public class Simulator {
+
+    private static final Logger logger = LogManager.getLogger(Simulator.class);
+
+    /**
+     * Games played by a single task before it stops splitting. Fixed, so results do not depend on the pool size.
+     */
+    private static final int SPLIT_THRESHOLD = 64;
+
+    /**
+     * Number of columns on the board
+     */
+    private final int cols;
+
+    /**
+     * Number of rows on the board
+     */
+    private final int rows;
+
+    /**
+     * Decides where each piece goes
+     */
+    private final PlacementPolicy policy;
+
+    /**
+     * Game mode, decides the timer delay
+     */
+    private String mode = "normal";
+
+    /**
+     * Mean time the simulated player takes to place a piece, in milliseconds
+     */
+    private int thinkMillis = 3000;
+
+    /**
+     * Most turns a single game may last, stops a policy which never loses from running forever
+     */
+    private int turnLimit = 10000;
+
+    /**
+     * Create a simulator for boards of the given size
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param policy decides where each piece goes
+     */
+    public Simulator(int cols, int rows, PlacementPolicy policy) {
+        this.cols = cols;
+        this.rows = rows;
+        this.policy = policy;
+    }
+
+    /**
+     * Set the game mode
+     * @param mode "easy", "normal" or "challenge"
+     */
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Set the mean time the simulated player takes to place a piece
+     * @param thinkMillis mean thinking time in milliseconds
+     */
+    public void setThinkMillis(int thinkMillis) {
+        this.thinkMillis = thinkMillis;
+    }
+
+    /**
+     * Set the most turns a single game may last
+     * @param turnLimit turn limit
+     */
+    public void setTurnLimit(int turnLimit) {
+        this.turnLimit = turnLimit;
+    }
+
+    /**
+     * Simulate a batch of games on the common fork/join pool
+     * @param games number of games
+     * @param seed seed for the random streams
+     * @return the combined result
+     */
+    public SimulationResult run(int games, long seed) {
+        return run(games, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Simulate a batch of games on the given pool
+     * @param games number of games
+     * @param seed seed for the random streams
+     * @param pool pool to run the games on
+     * @return the combined result
+     */
+    public SimulationResult run(int games, long seed, ForkJoinPool pool) {
+        logger.info("Simulating {} {} games on {} threads", games, mode, pool.getParallelism());
+        long start = System.nanoTime();
+        SimulationResult result = pool.invoke(new Batch(games, new SplittableRandom(seed)));
+        result.setElapsedNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Play a single game to the end and record it
+     * @param random random stream for this game
+     * @param result result to record the game in
+     */
+    private void playGame(SplittableRandom random, SimulationResult result) {
+        var engine = new GameEngine(cols, rows);
+        engine.setMode(mode);
+        engine.setPieceSource(new RandomPieceSource(random.split()));
+        engine.start();
+
+        long simulatedMillis = 0;
+        int turns = 0;
+        while (turns < turnLimit) {
+            turns++;
+            int delay = engine.getTimerDelay();
+            int thinking = random.nextInt(2 * thinkMillis + 1);
+            if (thinking < delay && policy.playTurn(engine, random)) {
+                simulatedMillis += thinking;
+                continue;
+            }
+            //The timer ran out, as in the game loop
+            simulatedMillis += delay;
+            if (!engine.loseLife()) break;
+            engine.resetMultiplier();
+            engine.nextPiece();
+        }
+
+        result.addGame(engine.getScore(), engine.getLevel(), engine.getTotalLines(), turns, engine.getPiecesPlayed(),
+                simulatedMillis, engine.isGameOver());
+    }
+
+    /**
+     * A range of games, split in half until it is small enough to play directly
+     */
+    private class Batch extends RecursiveTask<SimulationResult> {
+
+        /**
+         * Number of games in this batch
+         */
+        private final int games;
+
+        /**
+         * Random stream for this batch
+         */
+        private final SplittableRandom random;
+
+        /**
+         * Create a batch
+         * @param games number of games
+         * @param random random stream for this batch, owned by it
+         */
+        Batch(int games, SplittableRandom random) {
+            this.games = games;
+            this.random = random;
+        }
+
+        /**
+         * Play the games, or split them between two batches
+         * @return result of the games in this batch
+         */
+        @Override
+        protected SimulationResult compute() {
+            if (games <= SPLIT_THRESHOLD) {
+                var result = new SimulationResult();
+                for (int i = 0; i < games; i++) {
+                    playGame(random.split(), result);
+                }
+                return result;
+            }
+            int half = games / 2;
+            //Split the stream before forking so the split happens in the same order on every run
+            var left = new Batch(half, random.split());
+            var right = new Batch(games - half, random.split());
+            left.fork();
+            var result = right.compute();
+            result.merge(left.join());
+            return result;
+        }
+    }
+
+    /**
+     * Run a simulation from the command line and print the result
+     * @param args games, mode ("easy", "normal", "challenge" or "all"), policy ("greedy" or "random"), seed and threads,
+     *             all optional
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        String mode = args.length > 1 ? args[1] : "all";
+        PlacementPolicy policy = args.length > 2 && "random".equals(args[2]) ? new RandomPolicy() : new GreedyPolicy();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        var pool = new ForkJoinPool(threads);
+        String[] modes = "all".equals(mode) ? new String[] { "easy", "normal", "challenge" } : new String[] { mode };
+        try {
+            for (String m : modes) {
+                var simulator = new Simulator(5, 5, policy);
+                simulator.setMode(m);
+                System.out.println(m + " (seed " + seed + "): " + simulator.run(games, seed, pool));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
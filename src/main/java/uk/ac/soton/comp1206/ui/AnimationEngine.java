@@ -0,0 +1,200 @@
+package uk.ac.soton.comp1206.ui;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.scene.Node;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Animation Engine runs every animated effect in a scene from a single pulse callback: block fades, board
+ * repaints, the timer bar and score pops all tick together, once per frame, however many of them there are.
+ *
+ * Effects are dropped as soon as they report they are finished, and the engine stops listening for pulses altogether
+ * when nothing is active, so an idle scene costs nothing. Each scene has its own engine, stopped when the scene is
+ * cleaned up, so nothing carries on animating a scene which is no longer shown.
+ *
+ * Effects are ticked on the FX thread. They can be added from any thread.
+ */
+public class AnimationEngine {
+
+    private static final Logger logger = LogManager.getLogger(AnimationEngine.class);
+
+    /**
+     * Key the engine is stored under in its scene root's properties
+     */
+    private static final String SCENE_KEY = AnimationEngine.class.getName();
+
+    /**
+     * An effect which is moved on once per frame
+     */
+    public interface Effect {
+        /**
+         * Move the effect on to the given time
+         * @param now time of the current frame in nanoseconds, as given to an AnimationTimer
+         * @return true while the effect is still running, false once it has finished
+         */
+        boolean tick(long now);
+    }
+
+    /**
+     * Effects currently running, only touched on the FX thread
+     */
+    private final List<Effect> active = new ArrayList<>();
+
+    /**
+     * Number of effects currently running
+     */
+    private final ReadOnlyIntegerWrapper activeCount = new ReadOnlyIntegerWrapper(0);
+
+    /**
+     * Calls tick once per pulse while there are active effects
+     */
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            tick(now);
+        }
+    };
+
+    /**
+     * Whether the timer is running
+     */
+    private boolean running = false;
+
+    /**
+     * Whether tick is running, when removed effects are blanked out rather than taken out of the list
+     */
+    private boolean ticking = false;
+
+    /**
+     * Find the engine for the scene a node is in, by looking up through its parents for the root it is attached to
+     * @param node the node
+     * @return the engine, or null if the node is not inside a root with one
+     */
+    public static AnimationEngine forNode(Node node) {
+        for (var current = node; current != null; current = current.getParent()) {
+            if (current.getProperties().get(SCENE_KEY) instanceof AnimationEngine engine) return engine;
+        }
+        return null;
+    }
+
+    /**
+     * Attach this engine to the root of a scene, so the components in it can find it
+     * @param root the scene's root node
+     */
+    public void attach(Node root) {
+        root.getProperties().put(SCENE_KEY, this);
+    }
+
+    /**
+     * Start running an effect. Adding an effect which is already running does nothing.
+     * @param effect the effect
+     */
+    public void add(Effect effect) {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(() -> add(effect));
+            return;
+        }
+        if (active.contains(effect)) return;
+        active.add(effect);
+        activeCount.set(active.size());
+        if (!running) {
+            running = true;
+            timer.start();
+        }
+    }
+
+    /**
+     * Stop running an effect before it has finished
+     * @param effect the effect
+     */
+    public void remove(Effect effect) {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(() -> remove(effect));
+            return;
+        }
+        int index = active.indexOf(effect);
+        if (index < 0) return;
+        if (ticking) {
+            active.set(index, null);
+        } else {
+            active.remove(index);
+            activeCount.set(active.size());
+        }
+    }
+
+    /**
+     * Check whether an effect is running
+     * @param effect the effect
+     * @return true if it is running
+     */
+    public boolean isActive(Effect effect) {
+        return active.contains(effect);
+    }
+
+    /**
+     * Move every effect on by one frame, dropping those which have finished
+     * @param now time of the current frame in nanoseconds
+     */
+    private void tick(long now) {
+        //Indexed so effects may add or remove others while ticking; added ones start on the next frame
+        ticking = true;
+        int count = active.size();
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            var effect = active.get(i);
+            if (effect != null && effect.tick(now) && active.get(i) != null) {
+                active.set(kept++, effect);
+            }
+        }
+        //Move anything added during the ticks down behind the survivors
+        for (int i = count; i < active.size(); i++) {
+            if (active.get(i) != null) active.set(kept++, active.get(i));
+        }
+        ticking = false;
+        active.subList(kept, active.size()).clear();
+        activeCount.set(active.size());
+
+        if (active.isEmpty()) {
+            timer.stop();
+            running = false;
+        }
+    }
+
+    /**
+     * Drop every effect and stop, when the scene is finished with
+     */
+    public void stop() {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(this::stop);
+            return;
+        }
+        logger.info("Stopping {} animations", active.size());
+        active.clear();
+        activeCount.set(0);
+        timer.stop();
+        running = false;
+    }
+
+    /**
+     * Get the number of effects running
+     * @return active effects
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * The number of effects running, for display
+     * @return active effect count property
+     */
+    public ReadOnlyIntegerProperty activeCountProperty() {
+        return activeCount.getReadOnlyProperty();
+    }
+}
@@ -0,0 +1,358 @@
+package uk.ac.soton.comp1206.ui;
+
+import javafx.application.Platform;
+import javafx.scene.Parent;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundImage;
+import javafx.scene.layout.BackgroundPosition;
+import javafx.scene.layout.BackgroundRepeat;
+import javafx.scene.layout.BackgroundSize;
+import javafx.scene.layout.Region;
+import javafx.scene.text.Font;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The Asset Manager loads every image and font the game uses. Images are decoded on background threads and handed
+ * out as futures, so nothing waits on a decode when a scene is shown, and each image is only decoded once.
+ *
+ * Backgrounds are decoded at the size of the window rather than at the size of the file, which is all that can ever be
+ * seen of them. Decoded images are kept in a cache limited by the memory they take up, least recently used first.
+ *
+ * The backgrounds used to be set in game.css. The style classes are kept on the panes, but game.css no longer has
+ * rules for them: the Asset Manager maps menu-background and instruction-background to 1.jpg and challenge-background
+ * to 2.jpg, and sets the image on a pane with one of those classes when a scene is set up. A background colour set for
+ * them in game.css would take priority over the image set from code, so none is.
+ */
+public class AssetManager {
+
+    private static final Logger logger = LogManager.getLogger(AssetManager.class);
+
+    /**
+     * Most memory decoded images may take up before the least recently used are dropped, in bytes
+     */
+    private static final long BUDGET = 64L << 20;
+
+    /**
+     * How much larger than they are laid out images shown in image views are decoded, so they stay sharp when the
+     * window is scaled up
+     */
+    private static final double VIEW_SCALE = 2;
+
+    /**
+     * Number of threads decoding images
+     */
+    private static final int THREADS = 2;
+
+    /**
+     * Background image for each style class which has one
+     */
+    private static final Map<String, String> BACKGROUNDS = Map.of(
+            "menu-background", "1.jpg",
+            "challenge-background", "2.jpg",
+            "instruction-background", "1.jpg");
+
+    /**
+     * Width backgrounds are decoded at
+     */
+    private final int width;
+
+    /**
+     * Height backgrounds are decoded at
+     */
+    private final int height;
+
+    /**
+     * Decodes images
+     */
+    private final ExecutorService loader = Executors.newFixedThreadPool(THREADS, runnable -> {
+        var thread = new Thread(runnable, "Asset loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Images loaded or loading, keyed by name and size, least recently used first
+     */
+    private final LinkedHashMap<String, CompletableFuture<Image>> images = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Memory taken by each decoded image in the cache
+     */
+    private final Map<String, Long> sizes = new HashMap<>();
+
+    /**
+     * Memory taken by every decoded image in the cache
+     */
+    private long used = 0;
+
+    /**
+     * Fonts already loaded, by file name
+     */
+    private final Map<String, Font> fonts = new HashMap<>();
+
+    /**
+     * Create an asset manager which decodes backgrounds at the given window size
+     * @param width window width
+     * @param height window height
+     */
+    public AssetManager(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Load an image at the size it is stored at
+     * @param name image name, in the images resources
+     * @return future completing with the image
+     */
+    public CompletableFuture<Image> load(String name) {
+        return load(name, 0, 0, false);
+    }
+
+    /**
+     * Load an image decoded at a given size
+     * @param name image name, in the images resources
+     * @param width width to decode at, or 0 for the stored width
+     * @param height height to decode at, or 0 for the stored height
+     * @param cover true to cover the whole size, cropping the longer side, false to fit inside it. The aspect ratio
+     *              is kept either way.
+     * @return future completing with the image
+     */
+    public synchronized CompletableFuture<Image> load(String name, int width, int height, boolean cover) {
+        var key = name + "@" + width + "x" + height + (cover ? "c" : "");
+        var future = images.get(key);
+        if (future != null && !future.isCompletedExceptionally()) return future;
+
+        future = CompletableFuture.supplyAsync(() -> decode(name, width, height, cover), loader);
+        images.put(key, future);
+        future.thenAccept(image -> loaded(key, image));
+        return future;
+    }
+
+    /**
+     * Start loading images which are about to be needed
+     * @param names image names
+     */
+    public void preload(String... names) {
+        for (var name : names) load(name);
+    }
+
+    /**
+     * Start loading an image which is about to be shown in an image view with the given fit height
+     * @param name image name
+     * @param fitHeight height the view shows it at
+     */
+    public void preload(String name, double fitHeight) {
+        load(name, 0, (int) Math.ceil(fitHeight * VIEW_SCALE), false);
+    }
+
+    /**
+     * Start loading every background at the window size
+     */
+    public void preloadBackgrounds() {
+        for (var name : BACKGROUNDS.values()) loadBackground(name);
+    }
+
+    /**
+     * Load a background image, decoded to cover the window
+     * @param name image name
+     * @return future completing with the image
+     */
+    public CompletableFuture<Image> loadBackground(String name) {
+        return load(name, width, height, true);
+    }
+
+    /**
+     * Show an image in an image view once it has loaded. If the view has a fit height the image is decoded to suit it
+     * rather than at its full size, so set that first. Safe to call from any thread.
+     * @param view image view
+     * @param name image name
+     */
+    public void setImage(ImageView view, String name) {
+        int fitHeight = (int) Math.ceil(view.getFitHeight() * VIEW_SCALE);
+        var future = fitHeight > 0 ? load(name, 0, fitHeight, false) : load(name);
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            var image = future.join();
+            //Views which are not shown yet can be set from any thread
+            if (Platform.isFxApplicationThread() || view.getScene() == null) {
+                view.setImage(image);
+                return;
+            }
+        }
+        future.thenAccept(image -> Platform.runLater(() -> view.setImage(image)));
+    }
+
+    /**
+     * Give every region in a scene with a background style class its background image, once each has loaded
+     * @param root root of the scene
+     */
+    public void applyBackgrounds(Parent root) {
+        for (var entry : BACKGROUNDS.entrySet()) {
+            for (var node : root.lookupAll("." + entry.getKey())) {
+                if (!(node instanceof Region region)) continue;
+                loadBackground(entry.getValue()).thenAccept(image -> {
+                    var background = background(image);
+                    if (Platform.isFxApplicationThread()) {
+                        region.setBackground(background);
+                    } else {
+                        Platform.runLater(() -> region.setBackground(background));
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Make a background which covers its region with an image, centred
+     * @param image the image
+     * @return the background
+     */
+    private static Background background(Image image) {
+        var size = new BackgroundSize(BackgroundSize.AUTO, BackgroundSize.AUTO, true, true, false, true);
+        return new Background(new BackgroundImage(image, BackgroundRepeat.NO_REPEAT, BackgroundRepeat.NO_REPEAT,
+                BackgroundPosition.CENTER, size));
+    }
+
+    /**
+     * Load a font from the style resources, if it has not been already
+     * @param name font file name
+     * @return the font
+     */
+    public synchronized Font loadFont(String name) {
+        return fonts.computeIfAbsent(name, file -> Font.loadFont(getClass().getResourceAsStream("/style/" + file), 32));
+    }
+
+    /**
+     * Decode an image, on a loader thread
+     * @param name image name
+     * @param width width to decode at, or 0 for the stored width
+     * @param height height to decode at, or 0 for the stored height
+     * @param cover true to keep the aspect ratio and cover the size
+     * @return the image
+     */
+    private Image decode(String name, int width, int height, boolean cover) {
+        long start = System.nanoTime();
+        byte[] bytes;
+        try (var in = getClass().getResourceAsStream("/images/" + name)) {
+            if (in == null) throw new IOException("No image " + name);
+            bytes = in.readAllBytes();
+        } catch (IOException e) {
+            logger.error("Unable to read image {}", name, e);
+            throw new UncheckedIOException(e);
+        }
+
+        double requestedWidth = width;
+        double requestedHeight = height;
+        if (cover && width > 0 && height > 0) {
+            //Scale to whichever side needs the most, keeping the aspect ratio, so the whole size is covered
+            var stored = storedSize(bytes);
+            if (stored != null) {
+                double scale = Math.max((double) width / stored[0], (double) height / stored[1]);
+                requestedWidth = Math.ceil(stored[0] * scale);
+                requestedHeight = Math.ceil(stored[1] * scale);
+            } else {
+                requestedHeight = 0;
+            }
+        }
+        var image = new Image(new ByteArrayInputStream(bytes), requestedWidth, requestedHeight, true, true);
+        if (image.isError()) {
+            logger.error("Unable to decode image {}", name, image.getException());
+            throw new IllegalStateException("Unable to decode image " + name, image.getException());
+        }
+        logger.info("Decoded {} at {} x {} in {} ms", name, (int) image.getWidth(), (int) image.getHeight(),
+                (System.nanoTime() - start) / 1_000_000);
+        return image;
+    }
+
+    /**
+     * Read the width and height of a PNG or JPEG from its header, without decoding it
+     * @param bytes image file
+     * @return width and height, or null if the format is not recognised
+     */
+    private static int[] storedSize(byte[] bytes) {
+        //PNG: the IHDR chunk comes first, straight after the 8 byte signature
+        if (bytes.length >= 24 && (bytes[0] & 0xFF) == 0x89 && bytes[1] == 'P' && bytes[2] == 'N' && bytes[3] == 'G') {
+            return new int[]{readInt(bytes, 16), readInt(bytes, 20)};
+        }
+        //JPEG: walk the markers to the start of frame, which holds the height then the width
+        if (bytes.length >= 4 && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xD8) {
+            int offset = 2;
+            while (offset + 9 < bytes.length) {
+                if ((bytes[offset] & 0xFF) != 0xFF) return null;
+                int marker = bytes[offset + 1] & 0xFF;
+                int length = readShort(bytes, offset + 2);
+                boolean startOfFrame = marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8
+                        && marker != 0xCC;
+                if (startOfFrame) {
+                    return new int[]{readShort(bytes, offset + 7), readShort(bytes, offset + 5)};
+                }
+                offset += 2 + length;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read a big endian unsigned short
+     * @param bytes data
+     * @param offset where it starts
+     * @return the value
+     */
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 8 | (bytes[offset + 1] & 0xFF);
+    }
+
+    /**
+     * Read a big endian int
+     * @param bytes data
+     * @param offset where it starts
+     * @return the value
+     */
+    private static int readInt(byte[] bytes, int offset) {
+        return readShort(bytes, offset) << 16 | readShort(bytes, offset + 2);
+    }
+
+    /**
+     * Account for a decoded image in the cache, dropping the least recently used images to stay within the budget
+     * @param key cache key
+     * @param image the decoded image
+     */
+    private synchronized void loaded(String key, Image image) {
+        if (!images.containsKey(key)) return;
+        long size = (long) image.getWidth() * (long) image.getHeight() * 4;
+        sizes.put(key, size);
+        used += size;
+
+        Iterator<Map.Entry<String, CompletableFuture<Image>>> eldest = images.entrySet().iterator();
+        while (used > BUDGET && eldest.hasNext()) {
+            var entry = eldest.next();
+            //Never drop what was just loaded, or anything still loading
+            if (entry.getKey().equals(key) || !sizes.containsKey(entry.getKey())) continue;
+            used -= sizes.remove(entry.getKey());
+            eldest.remove();
+            logger.info("Evicted image {}", entry.getKey());
+        }
+    }
+
+    /**
+     * Get the memory taken by the decoded images in the cache
+     * @return bytes used
+     */
+    public synchronized long getUsed() {
+        return used;
+    }
+}
@@ -0,0 +1,307 @@
+package uk.ac.soton.comp1206.ui;
+
+import javafx.animation.AnimationTimer;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.network.Communicator;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Debug HUD is an overlay showing how the game is keeping up: frames per second, how long each pulse takes, how
+ * many board cells are repainted each frame, how many animations are running, the heap and time lost to garbage
+ * collection, how long the current scene took to build and initialise, and how many listeners are attached to the
+ * communicator and how often they are called, and how the queue of messages to the server is keeping up.
+ *
+ * It only samples while it is shown. Each frame is recorded into a FrameSamples ring buffer, which can be exported as
+ * CSV. Pulse times run from the start of the pulse to the end of its layout pass, as JavaFX does not report the
+ * rendering which follows.
+ */
+public class DebugHud extends VBox {
+
+    private static final Logger logger = LogManager.getLogger(DebugHud.class);
+
+    /**
+     * Number of frames kept in the ring buffer, about a minute at 60 fps
+     */
+    private static final int CAPACITY = 4096;
+
+    /**
+     * Number of recent frames the figures are worked out over
+     */
+    private static final int WINDOW = 120;
+
+    /**
+     * How often the figures are updated, in nanoseconds
+     */
+    private static final long REFRESH_NANOS = 250_000_000L;
+
+    /**
+     * Canvas cells repainted since the last frame, counted from any board
+     */
+    private static final LongAdder repaints = new LongAdder();
+
+    /**
+     * Recorded frames
+     */
+    private final FrameSamples samples = new FrameSamples(CAPACITY);
+
+    /**
+     * Garbage collectors, for their collection times
+     */
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final Text fpsText = line();
+    private final Text pulseText = line();
+    private final Text repaintText = line();
+    private final Text animationText = line();
+    private final Text heapText = line();
+    private final Text gcText = line();
+    private final Text sceneText = line();
+    private final Text listenerText = line();
+    private final Text sendText = line();
+
+    /**
+     * Scene being measured
+     */
+    private Scene scene;
+
+    /**
+     * Scene the animation count comes from
+     */
+    private AnimationEngine animations;
+
+    /**
+     * Communicator the listener counts come from
+     */
+    private Communicator communicator;
+
+    /**
+     * Start of the current pulse, from the AnimationTimer, or 0 if it has been recorded
+     */
+    private long pulseStart = 0;
+
+    /**
+     * Time of the previous frame
+     */
+    private long lastFrame = 0;
+
+    /**
+     * Total collection time at the previous frame, in milliseconds
+     */
+    private long lastGc = 0;
+
+    /**
+     * Time the figures were last updated
+     */
+    private long lastRefresh = 0;
+
+    /**
+     * Whether the HUD is shown and sampling
+     */
+    private boolean running = false;
+
+    /**
+     * Notes the start of each pulse
+     */
+    private final AnimationTimer pulseTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            pulseStart = now;
+        }
+    };
+
+    /**
+     * Records the frame once the pulse's layout has finished
+     */
+    private final Runnable pulseEnd = this::record;
+
+    /**
+     * Create a hidden HUD
+     */
+    public DebugHud() {
+        setPadding(new Insets(6));
+        setMaxSize(USE_PREF_SIZE, USE_PREF_SIZE);
+        setMouseTransparent(true);
+        setBackground(new Background(new BackgroundFill(Color.rgb(0, 0, 0, 0.7), null, null)));
+        getChildren().addAll(fpsText, pulseText, repaintText, animationText, heapText, gcText, sceneText,
+                listenerText, sendText);
+        setVisible(false);
+    }
+
+    /**
+     * Count canvas cells repainted, safe to call from any thread
+     * @param cells number of cells repainted
+     */
+    public static void repainted(int cells) {
+        repaints.add(cells);
+    }
+
+    /**
+     * Set the communicator whose listeners are counted
+     * @param communicator the communicator
+     */
+    public void setCommunicator(Communicator communicator) {
+        this.communicator = communicator;
+    }
+
+    /**
+     * Make a line of the HUD
+     * @return text for the line
+     */
+    private static Text line() {
+        var text = new Text();
+        text.setFill(Color.LIME);
+        text.setFont(Font.font("Monospaced", 12));
+        return text;
+    }
+
+    /**
+     * Start measuring a new scene, moving the HUD onto its pane
+     * @param scene scene being shown
+     * @param root the scene's pane
+     * @param animations the scene's animation engine
+     * @param build time taken to build the scene, in nanoseconds
+     */
+    public void attach(Scene scene, GamePane root, AnimationEngine animations, long build) {
+        if (this.scene != null) this.scene.removePostLayoutPulseListener(pulseEnd);
+        this.scene = scene;
+        this.animations = animations;
+        if (running) scene.addPostLayoutPulseListener(pulseEnd);
+        if (getParent() instanceof GamePane previous) previous.getChildren().remove(this);
+        root.getChildren().add(this);
+        sceneText.setText(String.format("Build %.1f ms", build / 1e6));
+    }
+
+    /**
+     * Show how long the current scene took to initialise, once it has
+     * @param build time taken to build the scene, in nanoseconds
+     * @param initialise time taken to initialise the scene, in nanoseconds
+     */
+    public void initialised(long build, long initialise) {
+        sceneText.setText(String.format("Build %.1f ms  Init %.1f ms", build / 1e6, initialise / 1e6));
+    }
+
+    /**
+     * Show or hide the HUD, sampling only while it is shown
+     */
+    public void toggle() {
+        running = !running;
+        setVisible(running);
+        logger.info("Debug HUD {}", running ? "on" : "off");
+        if (running) {
+            toFront();
+            lastFrame = 0;
+            lastGc = gcMillis();
+            repaints.reset();
+            pulseTimer.start();
+            if (scene != null) scene.addPostLayoutPulseListener(pulseEnd);
+        } else {
+            pulseTimer.stop();
+            if (scene != null) scene.removePostLayoutPulseListener(pulseEnd);
+        }
+    }
+
+    /**
+     * Record the frame which has just been laid out, and update the figures every so often
+     */
+    private void record() {
+        if (pulseStart == 0) return;
+        long now = System.nanoTime();
+        long frame = lastFrame == 0 ? 0 : pulseStart - lastFrame;
+        long pulse = now - pulseStart;
+        lastFrame = pulseStart;
+        pulseStart = 0;
+
+        var runtime = Runtime.getRuntime();
+        long gc = gcMillis();
+        samples.add(now, frame, pulse, repaints.sumThenReset(), animations == null ? 0 : animations.getActiveCount(),
+                runtime.totalMemory() - runtime.freeMemory(), gc - lastGc);
+        lastGc = gc;
+
+        if (now - lastRefresh >= REFRESH_NANOS) {
+            lastRefresh = now;
+            refresh();
+        }
+    }
+
+    /**
+     * Work the figures out from the recent frames
+     */
+    private void refresh() {
+        var frames = samples.percentiles(FrameSamples.FRAME, WINDOW, 50);
+        var pulses = samples.percentiles(FrameSamples.PULSE, WINDOW, 50, 95, 99);
+        var latest = samples.latest(WINDOW);
+        long repainted = 0;
+        long gc = 0;
+        for (long[] row : latest) {
+            repainted += row[FrameSamples.REPAINTS];
+            gc += row[FrameSamples.GC];
+        }
+        var last = latest[latest.length - 1];
+
+        fpsText.setText(String.format("FPS %.0f", frames[0] == 0 ? 0 : 1e9 / frames[0]));
+        pulseText.setText(String.format("Pulse p50 %.2f  p95 %.2f  p99 %.2f ms",
+                pulses[0] / 1e6, pulses[1] / 1e6, pulses[2] / 1e6));
+        repaintText.setText(String.format("Repaints %.1f / frame", (double) repainted / latest.length));
+        animationText.setText("Animations " + last[FrameSamples.ANIMATIONS]);
+        heapText.setText(String.format("Heap %d / %d MB", last[FrameSamples.HEAP] >> 20,
+                Runtime.getRuntime().maxMemory() >> 20));
+        gcText.setText("GC " + gc + " ms over " + latest.length + " frames");
+        if (communicator != null) {
+            listenerText.setText("Listeners " + communicator.getListenerCount() + "  called "
+                    + communicator.getInvocationCount() + " times");
+            var queue = communicator.getSendQueue();
+            sendText.setText(String.format("%s  send queue %d (max %d)  wait %.1f / %.1f ms  merged %d  dropped %d",
+                    communicator.isConnected() ? "Online" : "Offline", queue.getDepth(), queue.getMaxDepth(),
+                    queue.getMeanLatency() / 1e6, queue.getMaxLatency() / 1e6, queue.getCoalesced(), queue.getDropped()));
+        }
+    }
+
+    /**
+     * Total time spent in garbage collection so far
+     * @return milliseconds
+     */
+    private long gcMillis() {
+        long total = 0;
+        for (var collector : collectors) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Write the recorded frames to a CSV file in the working directory
+     */
+    public void exportCsv() {
+        var name = "frames-" + System.currentTimeMillis() + ".csv";
+        try (var out = new BufferedWriter(new FileWriter(name))) {
+            samples.writeCsv(out);
+            logger.info("Exported {} frames to {}", samples.size(), name);
+        } catch (IOException e) {
+            logger.error("Unable to export frames", e);
+        }
+    }
+
+    /**
+     * Get the recorded frames
+     * @return frame samples
+     */
+    public FrameSamples getSamples() {
+        return samples;
+    }
+}
@@ -0,0 +1,176 @@
+package uk.ac.soton.comp1206.ui;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FrameSamples is a fixed size ring buffer of per-frame timings, written by the FX thread and readable from any thread
+ * without locking.
+ *
+ * Every sample is a row of longs in one flat array. The writer fills in a row and then publishes it by moving the
+ * head on. Readers copy the rows they want and then check the head again: any row the writer could have lapped while
+ * it was being copied is thrown away rather than returned torn.
+ */
+public class FrameSamples {
+
+    /**
+     * Time of the frame in nanoseconds
+     */
+    public static final int TIME = 0;
+
+    /**
+     * Nanoseconds since the previous frame
+     */
+    public static final int FRAME = 1;
+
+    /**
+     * Nanoseconds from the start of the pulse to the end of its layout
+     */
+    public static final int PULSE = 2;
+
+    /**
+     * Canvas cells repainted during the frame
+     */
+    public static final int REPAINTS = 3;
+
+    /**
+     * Animation effects active in the scene
+     */
+    public static final int ANIMATIONS = 4;
+
+    /**
+     * Heap in use, in bytes
+     */
+    public static final int HEAP = 5;
+
+    /**
+     * Milliseconds spent in garbage collection since the previous frame
+     */
+    public static final int GC = 6;
+
+    /**
+     * Number of values in each sample
+     */
+    public static final int FIELDS = 7;
+
+    /**
+     * Column names, in field order, for the CSV export
+     */
+    private static final String[] NAMES = {"time_ns", "frame_ns", "pulse_ns", "repaints", "animations", "heap_bytes",
+            "gc_ms"};
+
+    /**
+     * Samples, FIELDS longs each
+     */
+    private final long[] data;
+
+    /**
+     * Number of samples the buffer holds, a power of two
+     */
+    private final int capacity;
+
+    /**
+     * Number of samples ever written, the next one goes in slot head % capacity
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Create a ring buffer holding at least the given number of samples
+     * @param capacity samples to hold, rounded up to a power of two
+     */
+    public FrameSamples(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.data = new long[this.capacity * FIELDS];
+    }
+
+    /**
+     * Add a sample, overwriting the oldest once the buffer is full. Only one thread may write.
+     * @param sample values in field order
+     */
+    public void add(long... sample) {
+        long index = head.get();
+        System.arraycopy(sample, 0, data, slot(index), FIELDS);
+        //Publishes the row written above to readers
+        head.set(index + 1);
+    }
+
+    /**
+     * Get the number of samples currently held
+     * @return samples held
+     */
+    public int size() {
+        return (int) Math.min(head.get(), capacity);
+    }
+
+    /**
+     * Copy out the most recent samples, oldest first
+     * @param count most samples to copy
+     * @return samples, FIELDS longs each
+     */
+    public long[][] latest(int count) {
+        long end = head.get();
+        long start = Math.max(0, end - Math.min(count, capacity));
+        var rows = new long[(int) (end - start)][FIELDS];
+        for (long i = start; i < end; i++) {
+            System.arraycopy(data, slot(i), rows[(int) (i - start)], 0, FIELDS);
+        }
+        //Drop any rows the writer has started overwriting since
+        long lapped = head.get() - capacity + 1;
+        int skip = (int) Math.max(0, Math.min(rows.length, lapped - start));
+        return skip == 0 ? rows : Arrays.copyOfRange(rows, skip, rows.length);
+    }
+
+    /**
+     * Work out percentiles of one field over the most recent samples
+     * @param field field to use
+     * @param count most samples to use
+     * @param percentiles percentiles to find, between 0 and 100
+     * @return the value at each percentile, all 0 if there are no samples
+     */
+    public long[] percentiles(int field, int count, double... percentiles) {
+        var rows = latest(count);
+        var values = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            values[i] = rows[i][field];
+        }
+        Arrays.sort(values);
+        var result = new long[percentiles.length];
+        if (values.length == 0) return result;
+        for (int i = 0; i < percentiles.length; i++) {
+            int rank = (int) Math.ceil(percentiles[i] / 100 * values.length) - 1;
+            result[i] = values[Math.max(0, Math.min(values.length - 1, rank))];
+        }
+        return result;
+    }
+
+    /**
+     * Write every sample held as CSV, oldest first, with a header row
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public void writeCsv(Writer out) throws IOException {
+        out.write(String.join(",", NAMES));
+        out.write('\n');
+        var line = new StringBuilder();
+        for (long[] row : latest(capacity)) {
+            line.setLength(0);
+            for (int field = 0; field < FIELDS; field++) {
+                if (field > 0) line.append(',');
+                line.append(row[field]);
+            }
+            line.append('\n');
+            out.write(line.toString());
+        }
+    }
+
+    /**
+     * Work out where a sample lives in the data array
+     * @param index sample number
+     * @return offset of its first field
+     */
+    private int slot(long index) {
+        return (int) (index & (capacity - 1)) * FIELDS;
+    }
+}
@@ -1,9 +1,13 @@
 package uk.ac.soton.comp1206.ui;
 
+import javafx.animation.PauseTransition;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
 import javafx.geometry.Pos;
 import javafx.scene.layout.*;
 import javafx.scene.transform.Scale;
 import javafx.scene.transform.Translate;
+import javafx.util.Duration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -17,7 +21,13 @@ import org.apache.logging.log4j.Logger;
  * It uses the width and height given which should match the main window size. This will be the base drawing resolution,
  * but will be scaled up or down as the window is resized.
  *
- * You should not need to modify this class
+ * The pane also works out its render scale: how many device pixels there are per unit of the base resolution, taking
+ * the screen's own scaling into account. Canvas based components follow it to draw at the real pixel size rather than
+ * being stretched. As changing it means redrawing those canvases, it is only updated once the window has stopped
+ * being resized for a moment: the first render scale is applied straight away, and later ones wait until the size has
+ * stayed the same for SETTLE. Components read it through renderScaleProperty.
+ *
+ * The scale and translate transforms are made once and updated in place on each layout, rather than replaced.
  */
 public class GamePane extends StackPane {
 
@@ -25,9 +35,44 @@ public class GamePane extends StackPane {
 
     private final int width;
     private final int height;
-    private double scalar = 1;
+    private final ReadOnlyDoubleWrapper scalar = new ReadOnlyDoubleWrapper(1);
     private final boolean autoScale = true;
 
+    /**
+     * How long the size has to stay the same before the render scale is updated
+     */
+    private static final Duration SETTLE = Duration.millis(150);
+
+    /**
+     * Device pixels per unit of the base resolution
+     */
+    private final ReadOnlyDoubleWrapper renderScale = new ReadOnlyDoubleWrapper(1);
+
+    /**
+     * Render scale waiting for the size to settle
+     */
+    private double pendingRenderScale = 1;
+
+    /**
+     * Whether a render scale has been set yet, the first one is set straight away
+     */
+    private boolean renderScaleSet = false;
+
+    /**
+     * Waits for resizing to stop before updating the render scale
+     */
+    private final PauseTransition settle = new PauseTransition(SETTLE);
+
+    /**
+     * Scale transform, updated in place on each layout
+     */
+    private final Scale scale = new Scale(1, 1, 0, 0);
+
+    /**
+     * Translate transform keeping the display centred, updated in place on each layout
+     */
+    private final Translate translate = new Translate();
+
     /**
      * Create a new scalable GamePane with the given drawing width and height.
      * @param width width
@@ -40,6 +85,9 @@ public class GamePane extends StackPane {
 
         getStyleClass().add("gamepane");
         setAlignment(Pos.TOP_LEFT);
+
+        getTransforms().setAll(translate, scale);
+        settle.setOnFinished(event -> renderScale.set(pendingRenderScale));
     }
 
     /**
@@ -47,7 +95,61 @@ public class GamePane extends StackPane {
      * @param scalar scalar
      */
     protected void setScalar(double scalar) {
-        this.scalar = scalar;
+        this.scalar.set(scalar);
+    }
+
+    /**
+     * Get the scalar being used by this draw pane
+     * @return scalar
+     */
+    public double getScalar() {
+        return scalar.get();
+    }
+
+    /**
+     * The scalar being used by this draw pane, for anything which draws at the scaled size such as the game boards
+     * @return scalar property
+     */
+    public ReadOnlyDoubleProperty scalarProperty() {
+        return scalar.getReadOnlyProperty();
+    }
+
+    /**
+     * Get the number of device pixels per unit of the base resolution
+     * @return render scale
+     */
+    public double getRenderScale() {
+        return renderScale.get();
+    }
+
+    /**
+     * The number of device pixels per unit of the base resolution, only updated once resizing has settled. Canvases
+     * should follow this to keep their backing store at the size they are shown at.
+     * @return render scale property
+     */
+    public ReadOnlyDoubleProperty renderScaleProperty() {
+        return renderScale.getReadOnlyProperty();
+    }
+
+    /**
+     * Work out the render scale from the scalar and the scaling of the screen the window is on, updating it once the
+     * size has settled
+     */
+    private void updateRenderScale() {
+        double outputScale = 1;
+        if (getScene() != null && getScene().getWindow() != null) {
+            outputScale = getScene().getWindow().getOutputScaleX();
+        }
+        double next = getScalar() * outputScale;
+        if (!renderScaleSet) {
+            renderScaleSet = true;
+            pendingRenderScale = next;
+            renderScale.set(next);
+            return;
+        }
+        if (next == pendingRenderScale && settle.getStatus() != PauseTransition.Status.RUNNING) return;
+        pendingRenderScale = next;
+        settle.playFromStart();
     }
 
     /**
@@ -74,21 +176,22 @@ public class GamePane extends StackPane {
         }
 
         //Set up the scale
-        Scale scale = new Scale(scalar,scalar);
+        scale.setX(getScalar());
+        scale.setY(getScalar());
 
         //Get the parent width and height
         var parentWidth = getWidth();
         var parentHeight = getHeight();
 
         //Get the padding needed on the top and left
-        var paddingLeft = (parentWidth - (width * scalar)) / 2.0;
-        var paddingTop = (parentHeight - (height * scalar)) / 2.0;
+        var paddingLeft = (parentWidth - (width * getScalar())) / 2.0;
+        var paddingTop = (parentHeight - (height * getScalar())) / 2.0;
 
-        //Perform the transformation
-        Translate translate = new Translate(paddingLeft, paddingTop);
-        scale.setPivotX(0);
-        scale.setPivotY(0);
-        getTransforms().setAll(translate, scale);
+        //Perform the transformation, moving the existing transforms rather than making new ones
+        translate.setX(paddingLeft);
+        translate.setY(paddingTop);
+
+        updateRenderScale();
     }
 
 }
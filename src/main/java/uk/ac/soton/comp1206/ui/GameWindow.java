@@ -1,10 +1,14 @@
 package uk.ac.soton.comp1206.ui;
 
 import javafx.application.Platform;
+import javafx.geometry.Pos;
 import javafx.scene.Scene;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.Pane;
+import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
-import javafx.scene.text.Font;
 import javafx.stage.Stage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -12,6 +16,15 @@ import uk.ac.soton.comp1206.App;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.network.Communicator;
 import uk.ac.soton.comp1206.scene.*;
+import uk.ac.soton.comp1206.server.LocalServer;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 /**
  * The GameWindow is the single window for the game where everything takes place. To move between screens in the game,
@@ -19,11 +32,26 @@ import uk.ac.soton.comp1206.scene.*;
  *
  * The GameWindow has methods to launch each of the different parts of the game by switching scenes. You can add more
  * methods here to add more screens to the game.
+ *
+ * Most scenes are built on a background thread while they are still detached from the stage, so the FX thread only
+ * has to swap them in. The scenes the player is likely to go to next are prepared ahead of time, and scenes with
+ * nothing to reset between visits (the menu, difficulty and instructions) are kept and reused rather than rebuilt.
+ * While a scene is still being built the current one shows a progress indicator instead of freezing.
  */
 public class GameWindow {
 
     private static final Logger logger = LogManager.getLogger(GameWindow.class);
 
+    /**
+     * Server connected to unless another is configured
+     */
+    private static final String DEFAULT_SERVER = "ws://ofb-labs.soton.ac.uk:9700";
+
+    /**
+     * Port the local server listens on unless another is configured
+     */
+    private static final int DEFAULT_PORT = 9700;
+
     private final int width;
     private final int height;
 
@@ -34,6 +62,45 @@ public class GameWindow {
 
     final Communicator communicator;
 
+    /**
+     * Frame timing overlay, toggled with F3 in any scene
+     */
+    private final DebugHud debugHud = new DebugHud();
+
+    /**
+     * Builds scenes off the FX thread
+     */
+    private final ExecutorService sceneBuilder = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "Scene builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Scenes being built or waiting to be shown, by name. Only used on the FX thread.
+     */
+    private final Map<String, CompletableFuture<BaseScene>> prepared = new HashMap<>();
+
+    /**
+     * Reusable scenes which have already been shown, by name. Only used on the FX thread.
+     */
+    private final Map<String, BaseScene> cached = new HashMap<>();
+
+    /**
+     * Counts scene switches, so a slow build finishing after the player has moved on is not shown
+     */
+    private int switches = 0;
+
+    /**
+     * Shown over the current scene while the next is built
+     */
+    private ProgressIndicator progress;
+
+    /**
+     * Loads and caches images and fonts
+     */
+    private final AssetManager assets;
+
     /**
      * Create a new GameWindow attached to the given stage with the specified width and height
      * @param stage stage
@@ -45,6 +112,7 @@ public class GameWindow {
         this.height = height;
 
         this.stage = stage;
+        this.assets = new AssetManager(width, height);
 
         //Setup window
         setupStage();
@@ -56,12 +124,33 @@ public class GameWindow {
         setupDefaultScene();
 
         //Setup communicator
-        communicator = new Communicator("ws://ofb-labs.soton.ac.uk:9700");
+        communicator = new Communicator(serverAddress());
+        debugHud.setCommunicator(communicator);
 
         //Go to menu
         startMenu();
     }
 
+    /**
+     * Work out which server to connect to. The tetrecs.server system property picks another server by its web socket
+     * address, or "local" to start one inside the game, listening on the port given by tetrecs.port, which players on
+     * the same network can also connect to.
+     * @return web socket address of the server
+     */
+    private String serverAddress() {
+        var server = System.getProperty("tetrecs.server", DEFAULT_SERVER);
+        if (!server.equals("local")) return server;
+
+        int port = Integer.getInteger("tetrecs.port", DEFAULT_PORT);
+        try {
+            port = new LocalServer(port).start().getPort();
+        } catch (IOException e) {
+            //Most likely another game on this machine is already running one, so use that
+            logger.warn("Unable to start local server on port {}: {}", port, e.getMessage());
+        }
+        return "ws://localhost:" + port;
+    }
+
     /**
      * Setup the font and any other resources we need
      */
@@ -69,23 +158,40 @@ public class GameWindow {
         logger.info("Loading resources");
 
         //We need to load fonts here due to the Font loader bug with spaces in URLs in the CSS files
-        Font.loadFont(getClass().getResourceAsStream("/style/Orbitron-Regular.ttf"),32);
-        Font.loadFont(getClass().getResourceAsStream("/style/Orbitron-Bold.ttf"),32);
-        Font.loadFont(getClass().getResourceAsStream("/style/Orbitron-ExtraBold.ttf"),32);
+        assets.loadFont("Orbitron-Regular.ttf");
+        assets.loadFont("Orbitron-Bold.ttf");
+        assets.loadFont("Orbitron-ExtraBold.ttf");
+
+        //Start decoding what the first scenes need straight away
+        assets.preloadBackgrounds();
+        assets.preload("TetrECS.png", 140);
+        assets.preload("TetrECS.png", 100);
+        assets.preload("Instructions.png", 360);
     }
 
     /**
      * Display the main menu
      */
     public void startMenu() {
-        loadScene(new MenuScene(this));
+        loadScene("menu", () -> new MenuScene(this));
+        //Where the player usually goes from the menu
+        prepareScene("difficulty", () -> new DifficultyScene(this));
+        prepareScene("instructions", () -> new InstructionScene(this));
     }
 
     /**
      * Display the single player challenge scene
      */
     public void startChallenge(String mode) {
-        loadScene(new ChallengeScene(this, mode));
+        loadScene("challenge " + mode, () -> new ChallengeScene(this, mode));
+    }
+
+    /**
+     * Build a single player challenge scene in the background, ready for when it is started
+     * @param mode game mode
+     */
+    public void prepareChallenge(String mode) {
+        prepareScene("challenge " + mode, () -> new ChallengeScene(this, mode));
     }
 
     /**
@@ -93,13 +199,15 @@ public class GameWindow {
      */
 
     public void startInstructions() {
-        loadScene(new InstructionScene(this));
+        loadScene("instructions", () -> new InstructionScene(this));
     }
     /**
      * Displays the scores
      */
     public void startScores(Game game) {
-        loadScene(new ScoreScene(this, game));
+        loadScene("scores", () -> new ScoreScene(this, game));
+        //Ready for a retry
+        prepareChallenge(game.getMode());
     }
 
     /**
@@ -118,7 +226,7 @@ public class GameWindow {
     }
 
     public void startDifficulty() {
-        loadScene(new DifficultyScene(this));
+        loadScene("difficulty", () -> new DifficultyScene(this));
     }
 
 
@@ -137,17 +245,156 @@ public class GameWindow {
      * @param newScene new scene to load
      */
     public void loadScene(BaseScene newScene) {
+        switches++;
+        hideProgress();
+
         //Cleanup remains of the previous scene
         cleanup();
 
         //Create the new scene and set it up
+        long start = System.nanoTime();
         newScene.build();
+        showScene(newScene, System.nanoTime() - start);
+    }
+
+    /**
+     * Build a scene in the background, if it is not already built or being built, so it is ready to be loaded
+     * @param name name of the scene, which loadScene will look it up by
+     * @param factory creates the scene
+     */
+    public void prepareScene(String name, Supplier<BaseScene> factory) {
+        if (cached.containsKey(name)) return;
+        var existing = prepared.get(name);
+        if (existing != null && !existing.isCompletedExceptionally()) return;
+        var future = CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            var newScene = factory.get();
+            newScene.build();
+            newScene.setBuildTime(System.nanoTime() - start);
+            return newScene;
+        }, sceneBuilder);
+        prepared.put(name, future);
+    }
+
+    /**
+     * Load the named scene, reusing it if it has been kept, using it if it has been prepared, or otherwise building it
+     * in the background. The current scene stays up, showing progress, until the new one is ready.
+     * @param name name of the scene
+     * @param factory creates the scene if it has to be built
+     */
+    public void loadScene(String name, Supplier<BaseScene> factory) {
+        int switchNumber = ++switches;
+        var reusable = cached.get(name);
+        if (reusable != null) {
+            hideProgress();
+            cleanup();
+            showScene(reusable, 0);
+            return;
+        }
+
+        prepareScene(name, factory);
+        var future = prepared.remove(name);
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            show(name, future.join());
+            return;
+        }
+
+        showProgress();
+        future.whenComplete((newScene, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                logger.error("Unable to build scene {}", name, error);
+                hideProgress();
+                return;
+            }
+            //The player has gone somewhere else while this was built, keep it for later if it can be reused
+            if (switchNumber != switches) {
+                if (newScene.isReusable()) cached.putIfAbsent(name, newScene);
+                return;
+            }
+            show(name, newScene);
+        }));
+    }
+
+    /**
+     * Swap in a scene which has been built in the background, keeping it if it can be reused
+     * @param name name of the scene
+     * @param newScene the built scene
+     */
+    private void show(String name, BaseScene newScene) {
+        hideProgress();
+        cleanup();
+        if (newScene.isReusable()) cached.put(name, newScene);
+        showScene(newScene, newScene.getBuildTime());
+    }
+
+    /**
+     * Put a built scene on the stage and initialise it
+     * @param newScene the built scene
+     * @param build time taken to build it, in nanoseconds
+     */
+    private void showScene(BaseScene newScene, long build) {
+        long start = System.nanoTime();
         currentScene = newScene;
-        scene = newScene.setScene();
+        if (newScene.getScene() == null) {
+            scene = newScene.setScene();
+            scene.addEventFilter(KeyEvent.KEY_PRESSED, this::debugKeys);
+        } else {
+            scene = newScene.getScene();
+        }
         stage.setScene(scene);
+        debugHud.attach(scene, newScene.getRoot(), newScene.getAnimations(), build);
+        logger.info("Switched to {} in {} ms", newScene.getClass().getSimpleName(),
+                (System.nanoTime() - start) / 1_000_000);
 
         //Initialise the scene when ready
-        Platform.runLater(() -> currentScene.initialise());
+        Platform.runLater(() -> {
+            long initStart = System.nanoTime();
+            newScene.initialise();
+            long initialise = System.nanoTime() - initStart;
+            logger.info("{} built in {} ms, initialised in {} ms", newScene.getClass().getSimpleName(),
+                    build / 1_000_000, initialise / 1_000_000);
+            debugHud.initialised(build, initialise);
+        });
+    }
+
+    /**
+     * Handle the debug keys: F3 shows or hides the debug HUD, F4 exports its frames as CSV
+     * @param event key pressed
+     */
+    private void debugKeys(KeyEvent event) {
+        if (event.getCode() == KeyCode.F3) {
+            debugHud.toggle();
+            event.consume();
+        } else if (event.getCode() == KeyCode.F4) {
+            debugHud.exportCsv();
+            event.consume();
+        }
+    }
+
+    /**
+     * Show a progress indicator over the current scene while the next one is built
+     */
+    private void showProgress() {
+        if (!(scene.getRoot() instanceof Pane pane)) return;
+        if (progress == null) {
+            progress = new ProgressIndicator();
+            progress.setMaxSize(80, 80);
+            progress.setMouseTransparent(true);
+        }
+        if (progress.getParent() == pane) return;
+        hideProgress();
+        StackPane.setAlignment(progress, Pos.CENTER);
+        progress.relocate((width - 80) / 2.0, (height - 80) / 2.0);
+        pane.getChildren().add(progress);
+    }
+
+    /**
+     * Remove the progress indicator
+     */
+    private void hideProgress() {
+        if (progress != null && progress.getParent() instanceof Pane pane) {
+            pane.getChildren().remove(progress);
+        }
     }
 
     /**
@@ -159,11 +406,17 @@ public class GameWindow {
     }
 
     /**
-     * When switching scenes, perform any cleanup needed, such as removing previous listeners
+     * When switching scenes, perform any cleanup needed, such as removing previous listeners. Each scene releases the
+     * listeners it subscribed to itself, so any still attached afterwards have leaked.
      */
     public void cleanup() {
         logger.info("Clearing up previous scene");
-        communicator.clearListeners();
+        if (currentScene != null) currentScene.cleanup();
+        int leaked = communicator.getListenerCount();
+        if (leaked > 0) {
+            logger.warn("{} listeners still attached after leaving the scene", leaked);
+        }
+        logger.info("Listeners have been called {} times", communicator.getInvocationCount());
     }
 
     /**
@@ -190,6 +443,14 @@ public class GameWindow {
         return this.height;
     }
 
+    /**
+     * Get the asset manager
+     * @return asset manager
+     */
+    public AssetManager getAssets() {
+        return assets;
+    }
+
     /**
      * Get the communicator
      * @return communicator